@@ -19,6 +19,9 @@ public class CartController {
     @Autowired
     private CartService cartService;
 
+    @Autowired
+    private IdempotencyCache idempotencyCache;
+
     private User getCurrentUser(Authentication authentication) {
         return (User) authentication.getPrincipal();
     }
@@ -26,11 +29,14 @@ public class CartController {
     @PostMapping("/add")
     public ResponseEntity<CartResponse> addToCart(
             Authentication authentication,
+            @RequestHeader(value = IdempotencyCache.HEADER, required = false) String idempotencyKey,
             @Valid @RequestBody AddToCartRequest request) {
 
         User user = getCurrentUser(authentication);
-        CartResponse response = cartService.addToCart(user, request);
-        return ResponseEntity.ok(response);
+        return idempotencyCache.execute(user, "add", idempotencyKey, request, () -> {
+            CartResponse response = cartService.addToCart(user, request);
+            return ResponseEntity.ok(response);
+        });
     }
 
     @GetMapping
@@ -48,22 +54,28 @@ public class CartController {
     @PutMapping("/items/{cartItemId}")
     public ResponseEntity<CartResponse> updateCartItem(
             Authentication authentication,
+            @RequestHeader(value = IdempotencyCache.HEADER, required = false) String idempotencyKey,
             @PathVariable Long cartItemId,
             @Valid @RequestBody UpdateCartItemRequest request) {
 
         User user = getCurrentUser(authentication);
-        CartResponse response = cartService.updateCartItem(user, cartItemId, request);
-        return ResponseEntity.ok(response);
+        return idempotencyCache.execute(user, "update-item/" + cartItemId, idempotencyKey, request, () -> {
+            CartResponse response = cartService.updateCartItem(user, cartItemId, request);
+            return ResponseEntity.ok(response);
+        });
     }
 
     @DeleteMapping("/items/{cartItemId}")
     public ResponseEntity<Void> removeCartItem(
             Authentication authentication,
+            @RequestHeader(value = IdempotencyCache.HEADER, required = false) String idempotencyKey,
             @PathVariable Long cartItemId) {
 
         User user = getCurrentUser(authentication);
-        cartService.removeCartItem(user, cartItemId);
-        return ResponseEntity.noContent().build();
+        return idempotencyCache.execute(user, "remove-item/" + cartItemId, idempotencyKey, null, () -> {
+            cartService.removeCartItem(user, cartItemId);
+            return ResponseEntity.noContent().build();
+        });
     }
 
     @DeleteMapping("/clear")
@@ -76,29 +88,47 @@ public class CartController {
     @PostMapping("/switch-vendor/{vendorId}")
     public ResponseEntity<CartResponse> switchVendor(
             Authentication authentication,
+            @RequestHeader(value = IdempotencyCache.HEADER, required = false) String idempotencyKey,
             @PathVariable Long vendorId) {
 
         User user = getCurrentUser(authentication);
-        CartResponse response = cartService.switchVendor(user, vendorId);
-        return ResponseEntity.ok(response);
+        return idempotencyCache.execute(user, "switch-vendor/" + vendorId, idempotencyKey, null, () -> {
+            CartResponse response = cartService.switchVendor(user, vendorId);
+            return ResponseEntity.ok(response);
+        });
     }
 
     @GetMapping("/count")
     public ResponseEntity<Integer> getCartItemCount(Authentication authentication) {
         User user = getCurrentUser(authentication);
-        CartResponse cart = cartService.getCart(user);
-        int count = cart != null ? cart.getTotalItems() : 0;
+        CartSummaryResponse summary = cartService.getCartSummary(user);
+        int count = summary != null ? (int) summary.totalItems() : 0;
         return ResponseEntity.ok(count);
     }
 
+    @GetMapping("/summary")
+    public ResponseEntity<CartSummaryResponse> getCartSummary(Authentication authentication) {
+        User user = getCurrentUser(authentication);
+        CartSummaryResponse summary = cartService.getCartSummary(user);
+
+        if (summary == null) {
+            return ResponseEntity.noContent().build();
+        }
+
+        return ResponseEntity.ok(summary);
+    }
+
     @PostMapping("/add-multiple")
     public ResponseEntity<CartResponse> addMultipleProductsToCart(
             Authentication authentication,
+            @RequestHeader(value = IdempotencyCache.HEADER, required = false) String idempotencyKey,
             @Valid @RequestBody AddMultipleProductsRequest request) {
 
         User user = getCurrentUser(authentication);
-        CartResponse response = cartService.addMultipleProductsToCart(user, request);
-        return ResponseEntity.ok(response);
+        return idempotencyCache.execute(user, "add-multiple", idempotencyKey, request, () -> {
+            CartResponse response = cartService.addMultipleProductsToCart(user, request);
+            return ResponseEntity.ok(response);
+        });
     }
 
 }   
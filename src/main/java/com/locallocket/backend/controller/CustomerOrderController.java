@@ -1,6 +1,7 @@
 package com.locallocket.backend.controller;
 
 import com.locallocket.backend.dto.order.*;
+import com.locallocket.backend.dto.payment.RefundResponse;
 import com.locallocket.backend.entity.OrderStatus;
 import com.locallocket.backend.entity.User;
 import com.locallocket.backend.service.OrderService;
@@ -54,6 +55,19 @@ public class CustomerOrderController {
         return ResponseEntity.ok(orders);
     }
 
+    // Cursor-paged feed, newest first; latency does not grow with order history like page/offset does
+    @GetMapping("/feed")
+    public ResponseEntity<OrderFeedResponse> getOrderFeed(
+            Authentication authentication,
+            @RequestParam(required = false) OrderStatus status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+
+        User user = getCurrentUser(authentication);
+        OrderFeedResponse feed = orderService.getCustomerOrderFeed(user, status, cursor, size);
+        return ResponseEntity.ok(feed);
+    }
+
     @GetMapping("/{orderId}")
     public ResponseEntity<OrderResponse> getOrder(
             Authentication authentication,
@@ -74,4 +88,14 @@ public class CustomerOrderController {
         OrderResponse response = orderService.cancelOrder(user, orderId, request);
         return ResponseEntity.ok(response);
     }
+
+    @GetMapping("/{orderId}/refund")
+    public ResponseEntity<RefundResponse> getOrderRefund(
+            Authentication authentication,
+            @PathVariable Long orderId) {
+
+        User user = getCurrentUser(authentication);
+        RefundResponse refund = orderService.getOrderRefund(user, orderId);
+        return ResponseEntity.ok(refund);
+    }
 }
@@ -0,0 +1,123 @@
+package com.locallocket.backend.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.locallocket.backend.entity.User;
+import com.locallocket.backend.exception.BadRequestException;
+import com.locallocket.backend.exception.IdempotencyKeyReusedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Short-lived memory of responses to requests sent with an {@code Idempotency-Key} header, so a
+ * request the app sends twice (a double tap, a retry after a dropped connection) is applied once.
+ * <p>
+ * Keys are scoped to the user and the operation. A repeat that arrives while the first request is
+ * still running waits for it and gets the same response, marked with {@code Idempotent-Replayed}.
+ * Failed requests are forgotten, so they can be retried with the same key. A key sent again with a
+ * different request body is a client bug rather than a repeat, and is rejected with 422.
+ */
+@Component
+public class IdempotencyCache {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final Cache<String, Stored> responses;
+
+    private final ObjectMapper objectMapper;
+
+    public IdempotencyCache(ObjectMapper objectMapper,
+                            @Value("${cart.idempotency.max-size:10000}") long maxSize,
+                            @Value("${cart.idempotency.ttl-seconds:60}") long ttlSeconds) {
+        this.objectMapper = objectMapper;
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    /**
+     * Run the request, unless one with the same key has already run or is running for this user and
+     * operation, in which case its response is returned instead. Without a key the request just runs.
+     *
+     * @param body the request body, or null if there is none; a repeat must send the same one
+     */
+    public <T> ResponseEntity<T> execute(User user, String operation, String key, Object body,
+                                         Supplier<ResponseEntity<T>> request) {
+        if (key == null || key.isBlank()) {
+            return request.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException(HEADER + " cannot exceed " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String cacheKey = user.getId() + ":" + operation + ":" + key;
+        Stored stored = new Stored(fingerprint(body), new CompletableFuture<>());
+        CompletableFuture<ResponseEntity<?>> response = stored.response();
+        Stored first = responses.asMap().putIfAbsent(cacheKey, stored);
+        if (first != null) {
+            if (!first.fingerprint().equals(stored.fingerprint())) {
+                throw new IdempotencyKeyReusedException(HEADER + " was already used with a different request");
+            }
+            return replay(first.response());
+        }
+
+        try {
+            ResponseEntity<T> result = request.get();
+            response.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            responses.asMap().remove(cacheKey, stored);
+            response.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private String fingerprint(Object body) {
+        try {
+            byte[] json = body != null ? objectMapper.writeValueAsBytes(body) : new byte[0];
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize request body", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> ResponseEntity<T> replay(CompletableFuture<ResponseEntity<?>> first) {
+        ResponseEntity<T> response;
+        try {
+            response = (ResponseEntity<T>) first.join();
+        } catch (CompletionException e) {
+            // The repeat fails the way the first request did
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return ResponseEntity.status(response.getStatusCode())
+                .headers(response.getHeaders())
+                .header(REPLAYED_HEADER, "true")
+                .body(response.getBody());
+    }
+
+    /**
+     * The first request's response, with a hash of its body to tell repeats from reused keys
+     */
+    private record Stored(String fingerprint, CompletableFuture<ResponseEntity<?>> response) {}
+}
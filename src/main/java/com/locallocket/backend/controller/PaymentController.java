@@ -2,7 +2,9 @@ package com.locallocket.backend.controller;
 
 import com.locallocket.backend.dto.payment.*;
 import com.locallocket.backend.entity.User;
+import com.locallocket.backend.service.PaymentGateway;
 import com.locallocket.backend.service.PaymentService;
+import com.locallocket.backend.service.PaymentWebhookProcessor;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,6 +24,12 @@ public class PaymentController {
     @Autowired
     private PaymentService paymentService;
 
+    @Autowired
+    private PaymentWebhookProcessor paymentWebhookProcessor;
+
+    @Autowired
+    private PaymentGateway paymentGateway;
+
     private User getCurrentUser(Authentication authentication) {
         return (User) authentication.getPrincipal();
     }
@@ -32,6 +40,9 @@ public class PaymentController {
             Authentication authentication,
             @Valid @RequestBody CreatePaymentRequest request) {
 
+        // Turn checkouts away up front while the gateway is down rather than after reading the order
+        paymentGateway.requireAvailable();
+
         User user = getCurrentUser(authentication);
         PaymentOrderResponse response = paymentService.createPaymentOrder(user, request);
 
@@ -47,6 +58,8 @@ public class PaymentController {
             Authentication authentication,
             @Valid @RequestBody VerifyPaymentRequest request) {
 
+        paymentGateway.requireAvailable();
+
         User user = getCurrentUser(authentication);
         PaymentResponse response = paymentService.verifyPayment(request);
 
@@ -59,17 +72,16 @@ public class PaymentController {
     @PostMapping("/webhook")
     public ResponseEntity<String> handleWebhook(
             @RequestBody String payload,
-            @RequestHeader(value = "X-Razorpay-Signature", required = false) String signature) {
+            @RequestHeader(value = "X-Razorpay-Signature", required = false) String signature,
+            @RequestHeader(value = "X-Razorpay-Event-Id", required = false) String eventId) {
 
-        logger.info("Received payment webhook");
+        logger.debug("Received payment webhook {}", eventId);
 
-        try {
-            paymentService.handlePaymentWebhook(payload, signature);
-            return ResponseEntity.ok("Webhook processed successfully");
-        } catch (Exception e) {
-            logger.error("Error processing webhook: ", e);
-            return ResponseEntity.badRequest().body("Webhook processing failed");
+        // Stored and acknowledged here; applied in the background by the webhook processor
+        if (!paymentWebhookProcessor.receive(payload, signature, eventId)) {
+            return ResponseEntity.badRequest().body("Invalid webhook signature");
         }
+        return ResponseEntity.ok("Webhook received");
     }
 
     @GetMapping("/order/{orderId}")
@@ -6,14 +6,17 @@ import com.locallocket.backend.entity.User;
 import com.locallocket.backend.entity.Vendor;
 import com.locallocket.backend.service.OrderService;
 import com.locallocket.backend.service.VendorAuthService;
+import com.locallocket.backend.service.VendorOrderStream;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/api/vendor/orders")
@@ -27,6 +30,9 @@ public class VendorOrderController {
     @Autowired
     private VendorAuthService vendorAuthService;
 
+    @Autowired
+    private VendorOrderStream vendorOrderStream;
+
     private Vendor getCurrentVendor(Authentication authentication) {
         User user = (User) authentication.getPrincipal();
         return vendorAuthService.currentVendor(user);
@@ -50,6 +56,26 @@ public class VendorOrderController {
         return ResponseEntity.ok(orders);
     }
 
+    // Cursor-paged feed, newest first; latency does not grow with order history like page/offset does
+    @GetMapping("/feed")
+    public ResponseEntity<OrderFeedResponse> getOrderFeed(
+            Authentication authentication,
+            @RequestParam(required = false) OrderStatus status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+
+        Vendor vendor = getCurrentVendor(authentication);
+        OrderFeedResponse feed = orderService.getVendorOrderFeed(vendor, status, cursor, size);
+        return ResponseEntity.ok(feed);
+    }
+
+    // Live order events (created, paid, status changes); on reconnect, catch up with /feed
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamOrders(Authentication authentication) {
+        Vendor vendor = getCurrentVendor(authentication);
+        return vendorOrderStream.subscribe(vendor.getId());
+    }
+
     @GetMapping("/{orderId}")
     public ResponseEntity<OrderResponse> getOrder(
             Authentication authentication,
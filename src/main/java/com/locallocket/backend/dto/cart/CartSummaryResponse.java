@@ -0,0 +1,18 @@
+package com.locallocket.backend.dto.cart;
+
+import com.locallocket.backend.entity.Cart;
+
+import java.math.BigDecimal;
+
+/**
+ * What the app's cart badge needs, without the cart's items, products or vendor details.
+ *
+ * @param itemCount  distinct products in the cart
+ * @param totalItems units across all of them
+ */
+public record CartSummaryResponse(Long cartId, Long vendorId, long itemCount, long totalItems, BigDecimal totalAmount) {
+
+    public CartSummaryResponse(Cart cart) {
+        this(cart.getId(), cart.getVendor().getId(), cart.getItems().size(), cart.getTotalItems(), cart.getTotalAmount());
+    }
+}
@@ -0,0 +1,44 @@
+package com.locallocket.backend.dto.order;
+
+import com.locallocket.backend.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in a newest-first order feed: the (createdAt, id) of the last order already returned.
+ * Sent to clients as an opaque URL-safe token.
+ */
+public record OrderCursor(LocalDateTime createdAt, Long id) {
+
+    // Sorts before every real order, so the first page needs no special query
+    public static final OrderCursor START = new OrderCursor(LocalDateTime.of(9999, 12, 31, 0, 0), Long.MAX_VALUE);
+
+    public static OrderCursor after(OrderResponse order) {
+        return new OrderCursor(order.getCreatedAt(), order.getId());
+    }
+
+    public String encode() {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param token cursor returned by a previous page, or null/blank for the first page
+     */
+    public static OrderCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return START;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            return new OrderCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.locallocket.backend.dto.order;
+
+import com.locallocket.backend.entity.Order;
+import com.locallocket.backend.entity.OrderStatus;
+import com.locallocket.backend.entity.PaymentStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Summary of an order change pushed to the vendor's order stream.
+ * Kept small on purpose; the full order is one GET /api/vendor/orders/{orderId} away.
+ */
+public class OrderEvent {
+
+    public static final String CREATED = "order.created";
+    public static final String PAID = "order.paid";
+    public static final String STATUS_CHANGED = "order.status";
+
+    private String type;
+    private Long orderId;
+    private String orderNumber;
+    private OrderStatus status;
+    private PaymentStatus paymentStatus;
+    private BigDecimal totalAmount;
+    private LocalDateTime createdAt;
+    private LocalDateTime occurredAt;
+
+    // Default constructor
+    public OrderEvent() {}
+
+    public OrderEvent(String type, Order order) {
+        this.type = type;
+        this.orderId = order.getId();
+        this.orderNumber = order.getOrderNumber();
+        this.status = order.getStatus();
+        this.paymentStatus = order.getPaymentStatus();
+        this.totalAmount = order.getTotalAmount();
+        this.createdAt = order.getCreatedAt();
+        this.occurredAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+
+    public Long getOrderId() { return orderId; }
+    public void setOrderId(Long orderId) { this.orderId = orderId; }
+
+    public String getOrderNumber() { return orderNumber; }
+    public void setOrderNumber(String orderNumber) { this.orderNumber = orderNumber; }
+
+    public OrderStatus getStatus() { return status; }
+    public void setStatus(OrderStatus status) { this.status = status; }
+
+    public PaymentStatus getPaymentStatus() { return paymentStatus; }
+    public void setPaymentStatus(PaymentStatus paymentStatus) { this.paymentStatus = paymentStatus; }
+
+    public BigDecimal getTotalAmount() { return totalAmount; }
+    public void setTotalAmount(BigDecimal totalAmount) { this.totalAmount = totalAmount; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getOccurredAt() { return occurredAt; }
+    public void setOccurredAt(LocalDateTime occurredAt) { this.occurredAt = occurredAt; }
+}
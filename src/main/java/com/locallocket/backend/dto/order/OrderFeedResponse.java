@@ -0,0 +1,33 @@
+package com.locallocket.backend.dto.order;
+
+import java.util.List;
+
+public class OrderFeedResponse {
+    private List<OrderResponse> orders;
+    private int size;
+    private boolean hasNext;
+    private String nextCursor; // Pass back as ?cursor= to get the next page; null on the last page
+
+    // Default constructor
+    public OrderFeedResponse() {}
+
+    public OrderFeedResponse(List<OrderResponse> orders, int size, boolean hasNext, String nextCursor) {
+        this.orders = orders;
+        this.size = size;
+        this.hasNext = hasNext;
+        this.nextCursor = nextCursor;
+    }
+
+    // Getters and Setters
+    public List<OrderResponse> getOrders() { return orders; }
+    public void setOrders(List<OrderResponse> orders) { this.orders = orders; }
+
+    public int getSize() { return size; }
+    public void setSize(int size) { this.size = size; }
+
+    public boolean isHasNext() { return hasNext; }
+    public void setHasNext(boolean hasNext) { this.hasNext = hasNext; }
+
+    public String getNextCursor() { return nextCursor; }
+    public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
+}
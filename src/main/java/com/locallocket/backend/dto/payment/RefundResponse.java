@@ -1,5 +1,8 @@
 package com.locallocket.backend.dto.payment;
 
+import com.locallocket.backend.entity.RefundJob;
+import com.locallocket.backend.entity.RefundJobStatus;
+
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
@@ -22,6 +25,14 @@ public class RefundResponse {
         this.processedAt = LocalDateTime.now();
     }
 
+    public RefundResponse(RefundJob job) {
+        this.refundId = job.getRazorpayRefundId();
+        this.amount = job.getAmount();
+        this.status = job.getStatus().name();
+        this.reason = job.getReason();
+        this.processedAt = job.getStatus() == RefundJobStatus.SUCCEEDED ? job.getUpdatedAt() : null;
+    }
+
     // Getters and Setters
     public String getRefundId() { return refundId; }
     public void setRefundId(String refundId) { this.refundId = refundId; }
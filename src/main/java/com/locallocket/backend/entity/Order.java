@@ -11,14 +11,17 @@ import java.util.List;
 
 @Entity
 @Table(name = "orders", indexes = {
-        @Index(name = "idx_orders_user_id", columnList = "user_id"),
-        @Index(name = "idx_orders_vendor_id", columnList = "vendor_id"),
-        @Index(name = "idx_orders_status", columnList = "status"),
-        @Index(name = "idx_orders_created_at", columnList = "created_at")
+        @Index(name = "idx_orders_created_at", columnList = "created_at"),
+        @Index(name = "idx_orders_status_created_at", columnList = "status, created_at"),
+        @Index(name = "idx_orders_user_created_at_id", columnList = "user_id, created_at, id"),
+        @Index(name = "idx_orders_user_status_created_at_id", columnList = "user_id, status, created_at, id"),
+        @Index(name = "idx_orders_vendor_created_at_id", columnList = "vendor_id, created_at, id"),
+        @Index(name = "idx_orders_vendor_status_created_at_id", columnList = "vendor_id, status, created_at, id")
 })
 public class Order {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq")
+    @SequenceGenerator(name = "orders_seq", sequenceName = "orders_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "order_number", unique = true, nullable = false)
@@ -13,14 +13,15 @@ import java.time.LocalDateTime;
 })
 public class OrderItem {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_items_seq")
+    @SequenceGenerator(name = "order_items_seq", sequenceName = "order_items_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(optional = false)
     @JoinColumn(name = "order_id")
     private Order order;
 
-    @ManyToOne(optional = false)
+    @ManyToOne(optional = false, fetch = FetchType.LAZY) // Responses only need the id; name etc. are snapshotted
     @JoinColumn(name = "product_id")
     private Product product;
 
@@ -11,7 +11,7 @@ import java.time.LocalDateTime;
 @Table(name = "payments", indexes = {
         @Index(name = "idx_payments_order_id", columnList = "order_id"),
         @Index(name = "idx_payments_razorpay_payment_id", columnList = "razorpay_payment_id"),
-        @Index(name = "idx_payments_status", columnList = "status"),
+        @Index(name = "idx_payments_status_created_at", columnList = "status, created_at"),
         @Index(name = "idx_payments_created_at", columnList = "created_at")
 })
 public class Payment {
@@ -5,5 +5,6 @@ public enum PaymentStatus {
     PENDING,    // Payment initiated by customer
     SUCCESS,    // Payment successful
     FAILED,     // Payment failed
+    REFUND_PENDING, // Refund queued or sent, gateway has not confirmed it yet
     REFUNDED    // Payment refunded (full or partial)
 }
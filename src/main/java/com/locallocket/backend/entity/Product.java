@@ -10,7 +10,7 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "products",
         indexes = {
-                @Index(name = "idx_products_vendor_id", columnList = "vendor_id"),
+                @Index(name = "idx_products_vendor_active", columnList = "vendor_id, is_active"),
                 @Index(name = "idx_products_name", columnList = "name")
         })
 public class Product {
@@ -0,0 +1,120 @@
+package com.locallocket.backend.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A full refund of one payment, queued in the same transaction that cancels or rejects the order
+ * and carried out by the refund worker. At most one job exists per payment.
+ */
+@Entity
+@Table(name = "refund_jobs", indexes = {
+        @Index(name = "idx_refund_jobs_order_id", columnList = "order_id")
+        // Plus a partial index on next_attempt_at for due jobs, see V4 migration
+})
+public class RefundJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    @Column(name = "payment_id", nullable = false, unique = true)
+    private Long paymentId;
+
+    @Column(name = "amount", precision = 12, scale = 2, nullable = false)
+    private BigDecimal amount;
+
+    @Column(name = "reason", length = 500)
+    private String reason;
+
+    // Sent to the gateway as the refund receipt, so a retry can find a refund an earlier try already created
+    @Column(name = "idempotency_key", nullable = false, unique = true, length = 64)
+    private String idempotencyKey;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private RefundJobStatus status = RefundJobStatus.PENDING;
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "razorpay_refund_id")
+    private String razorpayRefundId;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @CreationTimestamp
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    // Constructors
+    public RefundJob() {}
+
+    public RefundJob(Long orderId, Long paymentId, BigDecimal amount, String reason) {
+        this.orderId = orderId;
+        this.paymentId = paymentId;
+        this.amount = amount;
+        this.reason = reason;
+        this.idempotencyKey = "refund_" + paymentId;
+        this.nextAttemptAt = LocalDateTime.now();
+    }
+
+    // Helper methods
+    public boolean isOpen() {
+        return status == RefundJobStatus.PENDING || status == RefundJobStatus.SUBMITTED;
+    }
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getOrderId() { return orderId; }
+    public void setOrderId(Long orderId) { this.orderId = orderId; }
+
+    public Long getPaymentId() { return paymentId; }
+    public void setPaymentId(Long paymentId) { this.paymentId = paymentId; }
+
+    public BigDecimal getAmount() { return amount; }
+    public void setAmount(BigDecimal amount) { this.amount = amount; }
+
+    public String getReason() { return reason; }
+    public void setReason(String reason) { this.reason = reason; }
+
+    public String getIdempotencyKey() { return idempotencyKey; }
+    public void setIdempotencyKey(String idempotencyKey) { this.idempotencyKey = idempotencyKey; }
+
+    public RefundJobStatus getStatus() { return status; }
+    public void setStatus(RefundJobStatus status) { this.status = status; }
+
+    public Integer getAttempts() { return attempts; }
+    public void setAttempts(Integer attempts) { this.attempts = attempts; }
+
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+
+    public String getRazorpayRefundId() { return razorpayRefundId; }
+    public void setRazorpayRefundId(String razorpayRefundId) { this.razorpayRefundId = razorpayRefundId; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -0,0 +1,8 @@
+package com.locallocket.backend.entity;
+
+public enum RefundJobStatus {
+    PENDING,    // Waiting to be sent to the gateway (first try or retry after an error)
+    SUBMITTED,  // Accepted by the gateway, waiting for it to report the refund processed
+    SUCCEEDED,  // Gateway confirmed the refund; payment is REFUNDED
+    FAILED      // Gave up or the gateway rejected it; needs manual follow-up
+}
@@ -0,0 +1,7 @@
+package com.locallocket.backend.entity;
+
+public enum ReservationStatus {
+    HELD,       // Stock taken from the product, waiting for payment
+    CONVERTED,  // Payment succeeded, stock is now sold
+    RELEASED    // Hold expired, payment failed or order cancelled; stock given back
+}
@@ -1,6 +1,7 @@
 // src/main/java/com/locallocket/backend/entity/User.java
 package com.locallocket.backend.entity;
 
+import com.locallocket.backend.security.UserCacheInvalidationListener;
 import jakarta.persistence.*;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
@@ -11,6 +12,7 @@ import java.util.Set;
 
 @Entity
 @Table(name = "users")
+@EntityListeners(UserCacheInvalidationListener.class)
 public class User {
 
     @Id
@@ -7,7 +7,9 @@ import org.hibernate.annotations.UpdateTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "vendors")
+@Table(name = "vendors", indexes = {
+        @Index(name = "idx_vendors_lat_lon", columnList = "latitude, longitude")
+})
 public class Vendor {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
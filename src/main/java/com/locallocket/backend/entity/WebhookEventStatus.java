@@ -0,0 +1,7 @@
+package com.locallocket.backend.entity;
+
+public enum WebhookEventStatus {
+    RECEIVED,   // Stored and acknowledged, waiting to be applied
+    PROCESSED,  // Applied
+    FAILED      // Kept failing; skipped so later events of the same order are not held up
+}
@@ -0,0 +1,12 @@
+package com.locallocket.backend.exception;
+
+import com.razorpay.RazorpayException;
+
+/**
+ * A gateway call that got no answer in time. Whether it took effect at the gateway is unknown.
+ */
+public class GatewayTimeoutException extends RazorpayException {
+    public GatewayTimeoutException(String message) {
+        super(message);
+    }
+}
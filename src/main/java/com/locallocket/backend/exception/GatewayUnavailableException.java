@@ -0,0 +1,14 @@
+package com.locallocket.backend.exception;
+
+public class GatewayUnavailableException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public GatewayUnavailableException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -1,5 +1,7 @@
 package com.locallocket.backend.exception;
 
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -64,5 +66,34 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
     }
 
+    @ExceptionHandler(GatewayUnavailableException.class)
+    public ResponseEntity<Map<String, Object>> handleGatewayUnavailableException(GatewayUnavailableException ex) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("error", "PAYMENT_GATEWAY_UNAVAILABLE");
+        error.put("message", ex.getMessage());
+        error.put("timestamp", LocalDateTime.now());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(error);
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Map<String, Object>> handleOptimisticLockingFailureException(OptimisticLockingFailureException ex) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("error", "CONCURRENT_UPDATE");
+        error.put("message", "This was changed by another request at the same time. Please try again.");
+        error.put("timestamp", LocalDateTime.now());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+    }
+
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    public ResponseEntity<Map<String, Object>> handleIdempotencyKeyReusedException(IdempotencyKeyReusedException ex) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("error", "IDEMPOTENCY_KEY_REUSED");
+        error.put("message", ex.getMessage());
+        error.put("timestamp", LocalDateTime.now());
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(error);
+    }
+
 }
 
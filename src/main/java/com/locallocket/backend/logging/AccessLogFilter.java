@@ -0,0 +1,113 @@
+package com.locallocket.backend.logging;
+
+import com.locallocket.backend.security.JwtAuthenticationFilter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * One structured access-log event per request: method, path, status, latency, user id
+ * and auth outcome. Events go to the "access" logger, which logback-spring.xml routes
+ * through a non-blocking async appender, so request threads never wait on console I/O.
+ * <p>
+ * Headers are never logged and sensitive query parameters are redacted. Successful,
+ * fast requests are sampled; errors and slow requests are always logged.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class AccessLogFilter extends OncePerRequestFilter {
+
+    private static final Logger accessLog = LoggerFactory.getLogger("access");
+
+    private static final Set<String> SENSITIVE_PARAMS = Set.of(
+            "token", "access_token", "password", "secret", "signature", "key", "otp");
+
+    @Value("${logging.access.enabled:true}")
+    private boolean enabled;
+
+    @Value("${logging.access.sample-rate:1.0}")
+    private double sampleRate;
+
+    @Value("${logging.access.slow-threshold-ms:1000}")
+    private long slowThresholdMs;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        if (!enabled) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        long start = System.nanoTime();
+        Throwable failure = null;
+        try {
+            filterChain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            long durationMs = (System.nanoTime() - start) / 1_000_000;
+            int status = failure != null ? 500 : response.getStatus();
+
+            if (shouldLog(status, durationMs)) {
+                accessLog.atInfo()
+                        .addKeyValue("method", request.getMethod())
+                        .addKeyValue("path", request.getRequestURI())
+                        .addKeyValue("query", redactQuery(request.getQueryString()))
+                        .addKeyValue("status", status)
+                        .addKeyValue("durationMs", durationMs)
+                        .addKeyValue("userId", request.getAttribute(JwtAuthenticationFilter.AUTH_USER_ID_ATTRIBUTE))
+                        .addKeyValue("auth", request.getAttribute(JwtAuthenticationFilter.AUTH_OUTCOME_ATTRIBUTE))
+                        .addKeyValue("error", failure != null ? failure.getClass().getSimpleName() : null)
+                        .log("request");
+            }
+        }
+    }
+
+    private boolean shouldLog(int status, long durationMs) {
+        if (status >= 400 || durationMs >= slowThresholdMs || sampleRate >= 1.0) {
+            return true;
+        }
+        return sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    private String redactQuery(String query) {
+        if (query == null || query.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder redacted = new StringBuilder(query.length());
+        for (String pair : query.split("&")) {
+            if (redacted.length() > 0) {
+                redacted.append('&');
+            }
+            int eq = pair.indexOf('=');
+            String name = eq >= 0 ? pair.substring(0, eq) : pair;
+            if (eq >= 0 && isSensitive(name)) {
+                redacted.append(name).append("=***");
+            } else {
+                redacted.append(pair);
+            }
+        }
+        return redacted.toString();
+    }
+
+    private boolean isSensitive(String name) {
+        String normalized = name.toLowerCase(Locale.ROOT);
+        return SENSITIVE_PARAMS.stream().anyMatch(normalized::contains);
+    }
+}
@@ -3,7 +3,10 @@ package com.locallocket.backend.repository;
 import com.locallocket.backend.entity.Cart;
 import com.locallocket.backend.entity.CartItem;
 import com.locallocket.backend.entity.Product;
+import com.locallocket.backend.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -19,4 +22,7 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     void deleteByCart(Cart cart);
 
     boolean existsByCartAndProduct(Cart cart, Product product);
+
+    @Query("SELECT i.product.id FROM CartItem i WHERE i.cart.user = :user")
+    List<Long> findProductIdsByUser(@Param("user") User user);
 }
@@ -1,18 +1,32 @@
 package com.locallocket.backend.repository;
 
+import com.locallocket.backend.dto.cart.CartSummaryResponse;
 import com.locallocket.backend.entity.Cart;
 import com.locallocket.backend.entity.User;
 import com.locallocket.backend.entity.Vendor;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
 
 @Repository
-public interface CartRepository extends JpaRepository<Cart, Long> {
+public interface CartRepository extends JpaRepository<Cart, Long>, CartWriteRepository {
 
     Optional<Cart> findByUser(User user);
 
+    // Cart, vendor, items and their products in one round trip
+    @Query("SELECT DISTINCT c FROM Cart c JOIN FETCH c.vendor LEFT JOIN FETCH c.items i LEFT JOIN FETCH i.product " +
+            "WHERE c.user = :user")
+    Optional<Cart> findWithItemsByUser(@Param("user") User user);
+
+    // Totals only: the user's cart row by its unique user_id, and its items by cart_id
+    @Query("SELECT new com.locallocket.backend.dto.cart.CartSummaryResponse(c.id, c.vendor.id, count(i), " +
+            "coalesce(sum(i.quantity), 0L), c.totalAmount) FROM Cart c LEFT JOIN c.items i " +
+            "WHERE c.user = :user GROUP BY c.id, c.vendor.id, c.totalAmount")
+    Optional<CartSummaryResponse> findSummaryByUser(@Param("user") User user);
+
     void deleteByUser(User user);
 
     boolean existsByUser(User user);
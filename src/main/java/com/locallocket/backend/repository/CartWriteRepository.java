@@ -0,0 +1,56 @@
+package com.locallocket.backend.repository;
+
+import com.locallocket.backend.entity.Cart;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes whole carts held outside the persistence context, see CartStore
+ */
+public interface CartWriteRepository {
+
+    /**
+     * Make the stored carts of these users match the given ones, in a constant number of JDBC batches
+     * however many carts and items there are. Items no longer in a cart are deleted; a null cart
+     * deletes the user's cart, and a cart with a new id replaces the user's old one.
+     *
+     * @param carts user id -> cart, ids already assigned; null values allowed
+     */
+    void replaceCarts(Map<Long, Cart> carts);
+
+    /**
+     * Replace one user's cart as {@link #replaceCarts} does, but only if the stored cart is still the
+     * one the new cart was made from, compared by version. Takes no locks up front: a writer that
+     * loses the race finds out when it writes.
+     *
+     * @param expected the cart as it was read, null if the user had none
+     * @param updated  the cart to keep, ids assigned and version moved on; null to delete
+     * @return false, having written nothing, if another writer changed the user's cart first
+     */
+    boolean replaceCart(Long userId, Cart expected, Cart updated);
+
+    /**
+     * Delete up to {@code limit} carts, with their items, that were last changed before the cutoff,
+     * taking them in id order after {@code afterId}. Carts being changed right now are skipped.
+     */
+    DeletedCarts deleteAbandoned(LocalDateTime cutoff, long afterId, int limit);
+
+    /**
+     * @param lastCartId highest cart id deleted, to continue after; unchanged if none were
+     * @param userIds    owners of the carts deleted
+     * @param items      cart items deleted with them
+     */
+    record DeletedCarts(long lastCartId, List<Long> userIds, int items) {}
+
+    /**
+     * Ids from the carts table's own sequence, for carts created before they are written
+     */
+    List<Long> nextCartIds(int count);
+
+    /**
+     * Ids from the cart_items table's own sequence
+     */
+    List<Long> nextCartItemIds(int count);
+}
@@ -0,0 +1,180 @@
+package com.locallocket.backend.repository;
+
+import com.locallocket.backend.entity.Cart;
+import com.locallocket.backend.entity.CartItem;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class CartWriteRepositoryImpl implements CartWriteRepository {
+
+    // The user's other carts: all of them if the cart was deleted, the old one if it was replaced
+    private static final String DELETE_OTHER_ITEMS_SQL =
+            "DELETE FROM cart_items WHERE cart_id IN (SELECT id FROM carts WHERE user_id = ? AND id IS DISTINCT FROM ?)";
+
+    private static final String DELETE_OTHER_CARTS_SQL =
+            "DELETE FROM carts WHERE user_id = ? AND id IS DISTINCT FROM ?";
+
+    private static final String INSERT_CART_SQL =
+            "INSERT INTO carts (id, user_id, vendor_id, subtotal, platform_fee, delivery_fee, total_amount, " +
+                    "created_at, updated_at, version) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String UPSERT_CART_SQL = INSERT_CART_SQL +
+            " ON CONFLICT (id) DO UPDATE SET vendor_id = EXCLUDED.vendor_id, subtotal = EXCLUDED.subtotal, " +
+                    "platform_fee = EXCLUDED.platform_fee, delivery_fee = EXCLUDED.delivery_fee, " +
+                    "total_amount = EXCLUDED.total_amount, updated_at = EXCLUDED.updated_at, version = EXCLUDED.version";
+
+    // Another request created the user's cart first if this inserts nothing (one cart per user)
+    private static final String INSERT_FIRST_CART_SQL = INSERT_CART_SQL + " ON CONFLICT DO NOTHING";
+
+    // Another request changed the cart first if this updates nothing
+    private static final String CLAIM_CART_SQL =
+            "UPDATE carts SET version = ? WHERE id = ? AND version = ?";
+
+    private static final String DELETE_REMOVED_ITEMS_SQL =
+            "DELETE FROM cart_items WHERE cart_id = ? AND id <> ALL (?)";
+
+    // Unchanged items are left alone; changed ones move on a version
+    private static final String UPSERT_ITEM_SQL =
+            "INSERT INTO cart_items (id, cart_id, product_id, quantity, price_at_time, total_price, created_at, version) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, 0) " +
+                    "ON CONFLICT (id) DO UPDATE SET quantity = EXCLUDED.quantity, " +
+                    "price_at_time = EXCLUDED.price_at_time, total_price = EXCLUDED.total_price, " +
+                    "version = cart_items.version + 1 " +
+                    "WHERE (cart_items.quantity, cart_items.price_at_time) IS DISTINCT FROM " +
+                    "(EXCLUDED.quantity, EXCLUDED.price_at_time)";
+
+    // Walks the primary key rather than an index on updated_at, which every cart change would have to maintain
+    private static final String FIND_ABANDONED_SQL =
+            "SELECT id FROM carts WHERE id > ? AND updated_at < ? ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    private static final String DELETE_ABANDONED_ITEMS_SQL =
+            "DELETE FROM cart_items WHERE cart_id = ANY (?)";
+
+    private static final String DELETE_ABANDONED_CARTS_SQL =
+            "DELETE FROM carts WHERE id = ANY (?) RETURNING user_id";
+
+    private static final String NEXT_IDS_SQL =
+            "SELECT nextval(pg_get_serial_sequence(?, 'id')) FROM generate_series(1, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void replaceCarts(Map<Long, Cart> carts) {
+        if (carts.isEmpty()) {
+            return;
+        }
+
+        // User id order keeps concurrent writers from deadlocking
+        List<Map.Entry<Long, Cart>> users = new ArrayList<>(new TreeMap<>(carts).entrySet());
+        List<Cart> kept = new ArrayList<>();
+        List<CartItem> items = new ArrayList<>();
+        for (Map.Entry<Long, Cart> user : users) {
+            if (user.getValue() != null) {
+                kept.add(user.getValue());
+                items.addAll(user.getValue().getItems());
+            }
+        }
+
+        jdbcTemplate.batchUpdate(DELETE_OTHER_ITEMS_SQL, users, users.size(), (ps, user) -> {
+            ps.setLong(1, user.getKey());
+            ps.setObject(2, user.getValue() != null ? user.getValue().getId() : null, Types.BIGINT);
+        });
+        jdbcTemplate.batchUpdate(DELETE_OTHER_CARTS_SQL, users, users.size(), (ps, user) -> {
+            ps.setLong(1, user.getKey());
+            ps.setObject(2, user.getValue() != null ? user.getValue().getId() : null, Types.BIGINT);
+        });
+        if (kept.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(UPSERT_CART_SQL, kept, kept.size(), (ps, cart) -> setCart(ps, cart));
+        jdbcTemplate.batchUpdate(DELETE_REMOVED_ITEMS_SQL, kept, kept.size(), (ps, cart) -> {
+            ps.setLong(1, cart.getId());
+            ps.setArray(2, ps.getConnection().createArrayOf("bigint",
+                    cart.getItems().stream().map(CartItem::getId).toArray()));
+        });
+        if (items.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(UPSERT_ITEM_SQL, items, items.size(), (ps, item) -> {
+            ps.setLong(1, item.getId());
+            ps.setLong(2, item.getCart().getId());
+            ps.setLong(3, item.getProduct().getId());
+            ps.setInt(4, item.getQuantity());
+            ps.setBigDecimal(5, item.getPriceAtTime());
+            ps.setBigDecimal(6, item.getTotalPrice());
+            ps.setTimestamp(7, Timestamp.valueOf(item.getCreatedAt()));
+        });
+    }
+
+    @Override
+    public boolean replaceCart(Long userId, Cart expected, Cart updated) {
+        if (expected != null) {
+            // Holds the row until commit, so a writer that read the same version fails here instead
+            long version = updated != null && updated.getId().equals(expected.getId())
+                    ? updated.getVersion() : expected.getVersion() + 1;
+            if (jdbcTemplate.update(CLAIM_CART_SQL, version, expected.getId(), expected.getVersion()) == 0) {
+                return false;
+            }
+        } else if (updated != null) {
+            if (jdbcTemplate.update(INSERT_FIRST_CART_SQL, ps -> setCart(ps, updated)) == 0) {
+                return false;
+            }
+        }
+        replaceCarts(Collections.singletonMap(userId, updated));
+        return true;
+    }
+
+    @Override
+    public DeletedCarts deleteAbandoned(LocalDateTime cutoff, long afterId, int limit) {
+        List<Long> cartIds = jdbcTemplate.queryForList(FIND_ABANDONED_SQL, Long.class,
+                afterId, Timestamp.valueOf(cutoff), limit);
+        if (cartIds.isEmpty()) {
+            return new DeletedCarts(afterId, List.of(), 0);
+        }
+
+        Long[] ids = cartIds.toArray(Long[]::new);
+        int items = jdbcTemplate.update(DELETE_ABANDONED_ITEMS_SQL, ps ->
+                ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids)));
+        List<Long> userIds = jdbcTemplate.query(DELETE_ABANDONED_CARTS_SQL, ps ->
+                ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids)), (rs, row) -> rs.getLong(1));
+        // The carts were locked when found, so all of them are deleted here
+        return new DeletedCarts(cartIds.get(cartIds.size() - 1), userIds, items);
+    }
+
+    @Override
+    public List<Long> nextCartIds(int count) {
+        return jdbcTemplate.queryForList(NEXT_IDS_SQL, Long.class, "carts", count);
+    }
+
+    @Override
+    public List<Long> nextCartItemIds(int count) {
+        return jdbcTemplate.queryForList(NEXT_IDS_SQL, Long.class, "cart_items", count);
+    }
+
+    private static void setCart(PreparedStatement ps, Cart cart) throws SQLException {
+        ps.setLong(1, cart.getId());
+        ps.setLong(2, cart.getUser().getId());
+        ps.setLong(3, cart.getVendor().getId());
+        ps.setBigDecimal(4, cart.getSubtotal());
+        ps.setBigDecimal(5, cart.getPlatformFee());
+        ps.setBigDecimal(6, cart.getDeliveryFee());
+        ps.setBigDecimal(7, cart.getTotalAmount());
+        ps.setTimestamp(8, Timestamp.valueOf(cart.getCreatedAt()));
+        ps.setTimestamp(9, Timestamp.valueOf(cart.getUpdatedAt()));
+        ps.setLong(10, cart.getVersion());
+    }
+}
@@ -4,34 +4,87 @@ import com.locallocket.backend.entity.Order;
 import com.locallocket.backend.entity.OrderStatus;
 import com.locallocket.backend.entity.User;
 import com.locallocket.backend.entity.Vendor;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
 
-    // Customer order queries
+    // Customer order queries (to-one associations joined in, items loaded separately with findAllWithItemsByIdIn)
+    @EntityGraph(attributePaths = {"user", "vendor", "payment"})
     Page<Order> findByUserOrderByCreatedAtDesc(User user, Pageable pageable);
 
+    @EntityGraph(attributePaths = {"user", "vendor", "payment"})
     Page<Order> findByUserAndStatusOrderByCreatedAtDesc(User user, OrderStatus status, Pageable pageable);
 
     Optional<Order> findByIdAndUser(Long id, User user);
 
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.id = :id")
+    Optional<Order> findByIdForUpdate(@Param("id") Long id);
+
     // Vendor order queries
+    @EntityGraph(attributePaths = {"user", "vendor", "payment"})
     Page<Order> findByVendorOrderByCreatedAtDesc(Vendor vendor, Pageable pageable);
 
+    @EntityGraph(attributePaths = {"user", "vendor", "payment"})
     Page<Order> findByVendorAndStatusOrderByCreatedAtDesc(Vendor vendor, OrderStatus status, Pageable pageable);
 
     Optional<Order> findByIdAndVendor(Long id, Vendor vendor);
 
+    // Keyset feeds: newest first, strictly after the (createdAt, id) cursor; no OFFSET, no count.
+    // The standalone createdAt bound lets the feed index start its scan at the cursor; the OR alone is only a filter.
+    @EntityGraph(attributePaths = {"user", "vendor", "payment"})
+    @Query("SELECT o FROM Order o WHERE o.user = :user " +
+            "AND o.createdAt <= :createdAt AND (o.createdAt < :createdAt OR o.id < :id) ORDER BY o.createdAt DESC, o.id DESC")
+    Slice<Order> findUserFeed(@Param("user") User user,
+                              @Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"user", "vendor", "payment"})
+    @Query("SELECT o FROM Order o WHERE o.user = :user AND o.status = :status " +
+            "AND o.createdAt <= :createdAt AND (o.createdAt < :createdAt OR o.id < :id) ORDER BY o.createdAt DESC, o.id DESC")
+    Slice<Order> findUserFeedByStatus(@Param("user") User user, @Param("status") OrderStatus status,
+                                      @Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"user", "vendor", "payment"})
+    @Query("SELECT o FROM Order o WHERE o.vendor = :vendor " +
+            "AND o.createdAt <= :createdAt AND (o.createdAt < :createdAt OR o.id < :id) ORDER BY o.createdAt DESC, o.id DESC")
+    Slice<Order> findVendorFeed(@Param("vendor") Vendor vendor,
+                                @Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"user", "vendor", "payment"})
+    @Query("SELECT o FROM Order o WHERE o.vendor = :vendor AND o.status = :status " +
+            "AND o.createdAt <= :createdAt AND (o.createdAt < :createdAt OR o.id < :id) ORDER BY o.createdAt DESC, o.id DESC")
+    Slice<Order> findVendorFeedByStatus(@Param("vendor") Vendor vendor, @Param("status") OrderStatus status,
+                                        @Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+
+    // Single order views with everything OrderResponse reads
+    @EntityGraph(attributePaths = {"user", "vendor", "payment", "items"})
+    @Query("SELECT o FROM Order o WHERE o.id = :id AND o.user = :user")
+    Optional<Order> findDetailedByIdAndUser(@Param("id") Long id, @Param("user") User user);
+
+    @EntityGraph(attributePaths = {"user", "vendor", "payment", "items"})
+    @Query("SELECT o FROM Order o WHERE o.id = :id AND o.vendor = :vendor")
+    Optional<Order> findDetailedByIdAndVendor(@Param("id") Long id, @Param("vendor") Vendor vendor);
+
+    // Initializes the items of already loaded orders in one query; kept apart from the page query
+    // so the database still applies LIMIT/OFFSET instead of Hibernate paging in memory
+    @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items WHERE o.id IN :ids")
+    List<Order> findAllWithItemsByIdIn(@Param("ids") Collection<Long> ids);
+
     // Order number queries
     Optional<Order> findByOrderNumber(String orderNumber);
 
@@ -22,6 +22,10 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
 
     Optional<Payment> findByRazorpayOrderId(String razorpayOrderId);
 
+    // Lets a caller take the order lock before loading the payment
+    @Query("SELECT p.order.id FROM Payment p WHERE p.razorpayOrderId = :razorpayOrderId")
+    Optional<Long> findOrderIdByRazorpayOrderId(@Param("razorpayOrderId") String razorpayOrderId);
+
     Optional<Payment> findByRazorpayPaymentId(String razorpayPaymentId);
 
     List<Payment> findByStatus(PaymentStatus status);
@@ -43,7 +47,23 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     // Webhook verification
     List<Payment> findByWebhookVerifiedFalseAndStatusIn(List<PaymentStatus> statuses);
 
+    // Payments the gateway never confirmed to us, in id order for keyset paging
+    @Query("SELECT p.id AS id, p.order.id AS orderId, p.razorpayOrderId AS razorpayOrderId, p.status AS status " +
+            "FROM Payment p WHERE p.status IN :statuses AND p.createdAt < :createdBefore AND p.id > :afterId " +
+            "ORDER BY p.id")
+    List<StalePayment> findStale(@Param("statuses") List<PaymentStatus> statuses,
+                                 @Param("createdBefore") LocalDateTime createdBefore,
+                                 @Param("afterId") Long afterId,
+                                 Pageable pageable);
+
     boolean existsByRazorpayOrderId(String razorpayOrderId);
 
     boolean existsByRazorpayPaymentId(String razorpayPaymentId);
+
+    interface StalePayment {
+        Long getId();
+        Long getOrderId();
+        String getRazorpayOrderId();
+        PaymentStatus getStatus();
+    }
 }
@@ -3,13 +3,31 @@ package com.locallocket.backend.repository;
 
 import com.locallocket.backend.entity.Product;
 import com.locallocket.backend.entity.Vendor;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductStockRepository {
+
+    // Great-circle distance (km) from (:lat, :lon) to the product's vendor, spherical law of cosines
+    String VENDOR_DISTANCE_KM = "(6371.0 * acos(least(1.0, " +
+            "cos(:latRad) * cos(v.latitude * :degToRad) * cos(v.longitude * :degToRad - :lonRad) + " +
+            "sin(:latRad) * sin(v.latitude * :degToRad))))";
+
+    String NEARBY_PRODUCTS_WHERE = "WHERE p.isActive = true AND v.isActive = true " +
+            "AND LOWER(p.name) LIKE LOWER(CONCAT('%', :name, '%')) " +
+            "AND v.latitude BETWEEN :minLat AND :maxLat " +
+            "AND v.longitude BETWEEN :minLon AND :maxLon " +
+            "AND " + VENDOR_DISTANCE_KM + " <= :radiusKm";
 
-public interface ProductRepository extends JpaRepository<Product, Long> {
     Page<Product> findByVendor(Vendor vendor, Pageable pageable);
     Page<Product> findByVendorAndNameContainingIgnoreCase(Vendor vendor, String name, Pageable pageable);
     boolean existsByIdAndVendor(Long id, Vendor vendor);
@@ -21,8 +39,31 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
 
     Page<Product> findByIsActiveTrueAndNameContainingIgnoreCase(String name, Pageable pageable);
 
-    Page<Product> findByVendorInAndIsActiveTrueAndNameContainingIgnoreCase(
-            List<Vendor> vendors, String name, Pageable pageable);
+    // Location search in one statement: the bounding box hits idx_vendors_lat_lon, the exact distance trims the corners
+    @Query(value = "SELECT p FROM Product p JOIN FETCH p.vendor v " + NEARBY_PRODUCTS_WHERE,
+            countQuery = "SELECT COUNT(p) FROM Product p JOIN p.vendor v " + NEARBY_PRODUCTS_WHERE)
+    Page<Product> findActiveByNameNearLocation(@Param("name") String name,
+                                               @Param("minLat") double minLat, @Param("maxLat") double maxLat,
+                                               @Param("minLon") double minLon, @Param("maxLon") double maxLon,
+                                               @Param("latRad") double latRad, @Param("lonRad") double lonRad,
+                                               @Param("degToRad") double degToRad,
+                                               @Param("radiusKm") double radiusKm,
+                                               Pageable pageable);
+
+    @Query("SELECT p FROM Product p JOIN FETCH p.vendor WHERE p.id = :id")
+    Optional<Product> findWithVendorById(@Param("id") Long id);
+
+    @Query("SELECT p FROM Product p JOIN FETCH p.vendor WHERE p.id IN :ids")
+    List<Product> findAllWithVendorByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Keyset batches for walking the whole table; stable while rows are added or removed between batches
+    @Query("SELECT p FROM Product p WHERE p.id > :afterId ORDER BY p.id")
+    List<Product> findBatchAfterId(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Loads and row-locks every product in one statement; id order keeps concurrent checkouts from deadlocking
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Product p WHERE p.id IN :ids ORDER BY p.id")
+    List<Product> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
 
     // Count methods
     long countByVendor(Vendor vendor);
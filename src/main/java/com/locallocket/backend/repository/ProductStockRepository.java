@@ -0,0 +1,24 @@
+package com.locallocket.backend.repository;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Set-based stock adjustments that never read-modify-write in Java
+ */
+public interface ProductStockRepository {
+
+    /**
+     * Atomically decrement stock for every product in one JDBC batch.
+     * Each row is only updated if it still has enough stock.
+     *
+     * @param quantities product id -> quantity to take
+     * @return ids of products that did not have enough stock (empty when all succeeded)
+     */
+    List<Long> decrementStock(Map<Long, Integer> quantities);
+
+    /**
+     * Atomically give stock back for every product in one JDBC batch
+     */
+    void incrementStock(Map<Long, Integer> quantities);
+}
@@ -0,0 +1,58 @@
+package com.locallocket.backend.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class ProductStockRepositoryImpl implements ProductStockRepository {
+
+    private static final String DECREMENT_SQL =
+            "UPDATE products SET stock = stock - ?, updated_at = CURRENT_TIMESTAMP WHERE id = ? AND stock >= ?";
+
+    private static final String INCREMENT_SQL =
+            "UPDATE products SET stock = stock + ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<Long> decrementStock(Map<Long, Integer> quantities) {
+        // Always touch rows in id order so concurrent checkouts cannot deadlock on each other
+        List<Map.Entry<Long, Integer>> rows = new ArrayList<>(new TreeMap<>(quantities).entrySet());
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+
+        int[][] counts = jdbcTemplate.batchUpdate(DECREMENT_SQL, rows, rows.size(), (ps, row) -> {
+            ps.setInt(1, row.getValue());
+            ps.setLong(2, row.getKey());
+            ps.setInt(3, row.getValue());
+        });
+
+        List<Long> insufficient = new ArrayList<>();
+        int[] results = counts[0];
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == 0) {
+                insufficient.add(rows.get(i).getKey());
+            }
+        }
+        return insufficient;
+    }
+
+    @Override
+    public void incrementStock(Map<Long, Integer> quantities) {
+        List<Map.Entry<Long, Integer>> rows = new ArrayList<>(new TreeMap<>(quantities).entrySet());
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(INCREMENT_SQL, rows, rows.size(), (ps, row) -> {
+            ps.setInt(1, row.getValue());
+            ps.setLong(2, row.getKey());
+        });
+    }
+}
@@ -0,0 +1,18 @@
+package com.locallocket.backend.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Claiming of due refund jobs, safe with several instances polling the same table
+ */
+public interface RefundJobClaimRepository {
+
+    /**
+     * Lease up to limit due jobs by moving their next attempt to leaseUntil, skipping rows another
+     * worker is claiming right now. A job whose worker dies becomes due again when the lease runs out.
+     *
+     * @return ids of the claimed jobs, oldest due first
+     */
+    List<Long> claimDue(LocalDateTime now, LocalDateTime leaseUntil, int limit);
+}
@@ -0,0 +1,26 @@
+package com.locallocket.backend.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class RefundJobClaimRepositoryImpl implements RefundJobClaimRepository {
+
+    private static final String CLAIM_SQL =
+            "UPDATE refund_jobs SET next_attempt_at = ?, updated_at = CURRENT_TIMESTAMP WHERE id IN (" +
+                    "SELECT id FROM refund_jobs WHERE status IN ('PENDING', 'SUBMITTED') AND next_attempt_at <= ? " +
+                    "ORDER BY next_attempt_at LIMIT ? FOR UPDATE SKIP LOCKED) " +
+                    "RETURNING id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<Long> claimDue(LocalDateTime now, LocalDateTime leaseUntil, int limit) {
+        return jdbcTemplate.queryForList(CLAIM_SQL, Long.class,
+                Timestamp.valueOf(leaseUntil), Timestamp.valueOf(now), limit);
+    }
+}
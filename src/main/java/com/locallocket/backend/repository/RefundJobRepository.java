@@ -0,0 +1,19 @@
+package com.locallocket.backend.repository;
+
+import com.locallocket.backend.entity.RefundJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface RefundJobRepository extends JpaRepository<RefundJob, Long>, RefundJobClaimRepository {
+
+    Optional<RefundJob> findByPaymentId(Long paymentId);
+
+    Optional<RefundJob> findByOrderId(Long orderId);
+
+    Optional<RefundJob> findByIdempotencyKey(String idempotencyKey);
+
+    Optional<RefundJob> findByRazorpayRefundId(String razorpayRefundId);
+}
@@ -0,0 +1,24 @@
+package com.locallocket.backend.repository;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Bulk writes to the reservation ledger that bypass the persistence context
+ */
+public interface StockReservationHoldRepository {
+
+    /**
+     * Insert one HELD row per product in a single JDBC batch
+     *
+     * @param quantities product id -> quantity held
+     */
+    void insertHolds(Long orderId, Map<Long, Integer> quantities, LocalDateTime expiresAt);
+
+    /**
+     * Delete up to limit CONVERTED/RELEASED rows last touched before the cutoff
+     *
+     * @return number of rows deleted
+     */
+    int purgeSettled(LocalDateTime cutoff, int limit);
+}
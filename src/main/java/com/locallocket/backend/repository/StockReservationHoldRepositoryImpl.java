@@ -0,0 +1,47 @@
+package com.locallocket.backend.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class StockReservationHoldRepositoryImpl implements StockReservationHoldRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO stock_reservations (order_id, product_id, quantity, status, expires_at, created_at, updated_at) " +
+                    "VALUES (?, ?, ?, 'HELD', ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)";
+
+    // Bounded delete so one purge never holds a long lock or bloats a single transaction
+    private static final String PURGE_SQL =
+            "DELETE FROM stock_reservations WHERE id IN (" +
+                    "SELECT id FROM stock_reservations WHERE status <> 'HELD' AND updated_at < ? LIMIT ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertHolds(Long orderId, Map<Long, Integer> quantities, LocalDateTime expiresAt) {
+        List<Map.Entry<Long, Integer>> rows = new ArrayList<>(new TreeMap<>(quantities).entrySet());
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        Timestamp expires = Timestamp.valueOf(expiresAt);
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows, rows.size(), (ps, row) -> {
+            ps.setLong(1, orderId);
+            ps.setLong(2, row.getKey());
+            ps.setInt(3, row.getValue());
+            ps.setTimestamp(4, expires);
+        });
+    }
+
+    @Override
+    public int purgeSettled(LocalDateTime cutoff, int limit) {
+        return jdbcTemplate.update(PURGE_SQL, Timestamp.valueOf(cutoff), limit);
+    }
+}
@@ -0,0 +1,52 @@
+package com.locallocket.backend.repository;
+
+import com.locallocket.backend.entity.ReservationStatus;
+import com.locallocket.backend.entity.StockReservation;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long>, StockReservationHoldRepository {
+
+    boolean existsByOrderId(Long orderId);
+
+    // Row locks make concurrent releases of the same order give stock back only once
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM StockReservation r WHERE r.orderId = :orderId AND r.status IN :statuses ORDER BY r.productId")
+    List<StockReservation> findByOrderIdAndStatusInForUpdate(@Param("orderId") Long orderId,
+                                                             @Param("statuses") Collection<ReservationStatus> statuses);
+
+    @Modifying
+    @Query("UPDATE StockReservation r SET r.status = com.locallocket.backend.entity.ReservationStatus.CONVERTED, " +
+            "r.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE r.orderId = :orderId AND r.status = com.locallocket.backend.entity.ReservationStatus.HELD")
+    int convertHolds(@Param("orderId") Long orderId);
+
+    // Only ever moves expiry earlier
+    @Modifying
+    @Query("UPDATE StockReservation r SET r.expiresAt = :expiresAt, r.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE r.orderId = :orderId AND r.status = com.locallocket.backend.entity.ReservationStatus.HELD " +
+            "AND r.expiresAt > :expiresAt")
+    int shortenHolds(@Param("orderId") Long orderId, @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Modifying
+    @Query("UPDATE StockReservation r SET r.expiresAt = :expiresAt, r.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE r.orderId = :orderId AND r.status = com.locallocket.backend.entity.ReservationStatus.HELD")
+    int extendHolds(@Param("orderId") Long orderId, @Param("expiresAt") LocalDateTime expiresAt);
+
+    // Served by the (status, expires_at) index; oldest first so a backlog drains in order
+    @Query("SELECT r.orderId FROM StockReservation r " +
+            "WHERE r.status = com.locallocket.backend.entity.ReservationStatus.HELD AND r.expiresAt < :now " +
+            "GROUP BY r.orderId ORDER BY MIN(r.expiresAt)")
+    List<Long> findExpiredOrderIds(@Param("now") LocalDateTime now, Pageable pageable);
+}
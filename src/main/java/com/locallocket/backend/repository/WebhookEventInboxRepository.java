@@ -0,0 +1,14 @@
+package com.locallocket.backend.repository;
+
+/**
+ * Recording of incoming webhook deliveries without a read-before-write
+ */
+public interface WebhookEventInboxRepository {
+
+    /**
+     * Store a delivery unless one with the same event id is already stored.
+     *
+     * @return true if stored, false for a repeated delivery
+     */
+    boolean insertIfAbsent(String eventId, String eventType, String razorpayOrderId, String payload);
+}
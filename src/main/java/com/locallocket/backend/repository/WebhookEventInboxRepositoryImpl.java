@@ -0,0 +1,20 @@
+package com.locallocket.backend.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class WebhookEventInboxRepositoryImpl implements WebhookEventInboxRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO webhook_events (event_id, event_type, razorpay_order_id, payload, status, attempts, received_at) " +
+                    "VALUES (?, ?, ?, ?, 'RECEIVED', 0, CURRENT_TIMESTAMP) " +
+                    "ON CONFLICT (event_id) DO NOTHING";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public boolean insertIfAbsent(String eventId, String eventType, String razorpayOrderId, String payload) {
+        return jdbcTemplate.update(INSERT_SQL, eventId, eventType, razorpayOrderId, payload) == 1;
+    }
+}
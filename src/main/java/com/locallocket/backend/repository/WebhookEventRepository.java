@@ -0,0 +1,49 @@
+package com.locallocket.backend.repository;
+
+import com.locallocket.backend.entity.WebhookEvent;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface WebhookEventRepository extends JpaRepository<WebhookEvent, Long>, WebhookEventInboxRepository {
+
+    // Razorpay orders with events waiting, the one waiting longest first
+    @Query("SELECT e.razorpayOrderId FROM WebhookEvent e " +
+            "WHERE e.status = com.locallocket.backend.entity.WebhookEventStatus.RECEIVED AND e.razorpayOrderId IS NOT NULL " +
+            "GROUP BY e.razorpayOrderId ORDER BY MIN(e.id)")
+    List<String> findPendingRazorpayOrderIds(Pageable pageable);
+
+    // Locked so two processors never apply the same order's events side by side
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT e FROM WebhookEvent e " +
+            "WHERE e.razorpayOrderId = :razorpayOrderId " +
+            "AND e.status = com.locallocket.backend.entity.WebhookEventStatus.RECEIVED ORDER BY e.id")
+    List<WebhookEvent> lockPendingByRazorpayOrderId(@Param("razorpayOrderId") String razorpayOrderId, Pageable pageable);
+
+    // Events that belong to no Razorpay order, such as refund events
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT e FROM WebhookEvent e " +
+            "WHERE e.razorpayOrderId IS NULL " +
+            "AND e.status = com.locallocket.backend.entity.WebhookEventStatus.RECEIVED ORDER BY e.id")
+    List<WebhookEvent> lockPendingUnordered(Pageable pageable);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT e FROM WebhookEvent e " +
+            "WHERE e.id = :id AND e.status = com.locallocket.backend.entity.WebhookEventStatus.RECEIVED")
+    Optional<WebhookEvent> lockPendingById(@Param("id") Long id);
+
+    @Modifying
+    @Query("DELETE FROM WebhookEvent e " +
+            "WHERE e.status = com.locallocket.backend.entity.WebhookEventStatus.PROCESSED AND e.processedAt < :cutoff")
+    int deleteProcessedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
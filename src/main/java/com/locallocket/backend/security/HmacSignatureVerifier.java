@@ -0,0 +1,70 @@
+package com.locallocket.backend.security;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Checks hex-encoded HMAC-SHA256 signatures made with one secret.
+ * <p>
+ * Initialised {@link Mac} instances are pooled rather than kept per thread: request threads are
+ * virtual and short-lived, so a thread-local Mac would be built afresh for nearly every request.
+ * The expected signature is decoded to bytes and compared in constant time.
+ */
+public class HmacSignatureVerifier {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int SIGNATURE_HEX_LENGTH = 64;
+
+    private final SecretKeySpec key;
+    private final BlockingQueue<Mac> pool;
+
+    public HmacSignatureVerifier(String secret, int poolSize) {
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.pool = new ArrayBlockingQueue<>(poolSize);
+        // Fail at startup rather than on the first payment if the algorithm or key is unusable
+        pool.offer(newMac());
+    }
+
+    public boolean verify(String message, String signature) {
+        return message != null && verify(message.getBytes(StandardCharsets.UTF_8), signature);
+    }
+
+    public boolean verify(byte[] message, String signature) {
+        if (signature == null || signature.length() != SIGNATURE_HEX_LENGTH) {
+            return false;
+        }
+        byte[] expected;
+        try {
+            expected = HexFormat.of().parseHex(signature);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+
+        Mac mac = pool.poll();
+        if (mac == null) {
+            mac = newMac();
+        }
+        try {
+            // doFinal leaves the Mac reset and ready for the next message
+            return MessageDigest.isEqual(mac.doFinal(message), expected);
+        } finally {
+            pool.offer(mac);
+        }
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialise " + ALGORITHM, e);
+        }
+    }
+}
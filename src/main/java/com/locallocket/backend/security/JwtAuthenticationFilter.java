@@ -17,40 +17,39 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
+    // Request attributes read by the access log once the chain has finished
+    public static final String AUTH_USER_ID_ATTRIBUTE = "auth.userId";
+    public static final String AUTH_OUTCOME_ATTRIBUTE = "auth.outcome";
+
     @Autowired
     private JwtTokenProvider jwtTokenProvider;
 
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
                                     FilterChain filterChain) throws ServletException, IOException {
 
-        String requestURI = request.getRequestURI();
-        String method = request.getMethod();
-
-        // Debug: Print all headers
-        System.out.println("🔍 REQUEST: " + method + " " + requestURI);
-        System.out.println("🔍 Headers:");
-        java.util.Collections.list(request.getHeaderNames()).forEach(headerName -> {
-            System.out.println("   " + headerName + ": " + request.getHeader(headerName));
-        });
-
+        String outcome;
         try {
             String jwt = getJwtFromRequest(request);
 
             if (StringUtils.hasText(jwt)) {
-                System.out.println("✅ JWT Token found: " + jwt.substring(0, Math.min(jwt.length(), 20)) + "...");
+                Optional<JwtTokenProvider.VerifiedToken> verified = jwtTokenProvider.verify(jwt);
 
-                if (jwtTokenProvider.validateToken(jwt)) {
-                    Long userId = jwtTokenProvider.getUserIdFromToken(jwt);
-                    User user = userRepository.findById(userId).orElse(null);
+                if (verified.isPresent()) {
+                    Long userId = verified.get().userId();
+                    User user = principalCache.get(userId, id -> userRepository.findById(id).orElse(null));
 
                     if (user != null && user.getIsActive()) {
                         List<SimpleGrantedAuthority> authorities = user.getRoles().stream()
@@ -63,22 +62,24 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                         authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                         SecurityContextHolder.getContext().setAuthentication(authentication);
 
-                        System.out.println("✅ User authenticated: " + user.getEmail());
-                        System.out.println("✅ Authorities: " + authorities);
+                        request.setAttribute(AUTH_USER_ID_ATTRIBUTE, userId);
+                        outcome = "AUTHENTICATED";
                     } else {
-                        System.out.println("❌ User not found or inactive for ID: " + userId);
+                        request.setAttribute(AUTH_USER_ID_ATTRIBUTE, userId);
+                        outcome = "USER_INACTIVE";
                     }
                 } else {
-                    System.out.println("❌ JWT token validation failed");
+                    outcome = "INVALID_TOKEN";
                 }
             } else {
-                System.out.println("❌ No JWT token found for: " + requestURI);
+                outcome = "ANONYMOUS";
             }
         } catch (Exception ex) {
-            System.out.println("❌ JWT processing error: " + ex.getMessage());
-            ex.printStackTrace();
+            logger.warn("JWT processing error: " + ex.getMessage());
+            outcome = "ERROR";
         }
 
+        request.setAttribute(AUTH_OUTCOME_ATTRIBUTE, outcome);
         filterChain.doFilter(request, response);
     }
 
@@ -0,0 +1,63 @@
+package com.locallocket.backend.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.locallocket.backend.entity.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Bounded, TTL-evicting cache of authenticated users keyed by user id, so the JWT filter
+ * does not hit the database on every request. Entries are dropped whenever the user row
+ * changes (see {@link UserCacheInvalidationListener}); the TTL bounds staleness for
+ * changes made outside the application.
+ */
+@Component
+public class PrincipalCache {
+
+    private final Cache<Long, User> users;
+
+    public PrincipalCache(@Value("${security.principal-cache.max-size:10000}") long maxSize,
+                          @Value("${security.principal-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    /**
+     * Cached user, loading it on a miss. Missing users are not cached.
+     */
+    public User get(Long userId, Function<Long, User> loader) {
+        return users.get(userId, loader);
+    }
+
+    /**
+     * Drop the user now and again after the surrounding transaction commits, so a request
+     * racing the commit cannot re-cache the old row.
+     */
+    public void invalidate(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        users.invalidate(userId);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    users.invalidate(userId);
+                }
+            });
+        }
+    }
+
+    public void invalidateAll() {
+        users.invalidateAll();
+    }
+}
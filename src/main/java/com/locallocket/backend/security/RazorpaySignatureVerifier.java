@@ -0,0 +1,30 @@
+package com.locallocket.backend.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Verifies the two signatures Razorpay sends: the checkout signature, made with the API key
+ * secret, and the webhook signature, made with the webhook secret.
+ */
+@Component
+public class RazorpaySignatureVerifier {
+
+    private final HmacSignatureVerifier checkout;
+    private final HmacSignatureVerifier webhook;
+
+    public RazorpaySignatureVerifier(@Value("${razorpay.key-secret}") String keySecret,
+                                     @Value("${razorpay.webhook-secret}") String webhookSecret,
+                                     @Value("${razorpay.signature.mac-pool-size:32}") int macPoolSize) {
+        this.checkout = new HmacSignatureVerifier(keySecret, macPoolSize);
+        this.webhook = new HmacSignatureVerifier(webhookSecret, macPoolSize);
+    }
+
+    public boolean verifyPayment(String razorpayOrderId, String razorpayPaymentId, String signature) {
+        return checkout.verify(razorpayOrderId + "|" + razorpayPaymentId, signature);
+    }
+
+    public boolean verifyWebhook(String payload, String signature) {
+        return webhook.verify(payload, signature);
+    }
+}
@@ -0,0 +1,22 @@
+package com.locallocket.backend.security;
+
+import com.locallocket.backend.entity.User;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Evicts a user from the {@link PrincipalCache} whenever the row is updated or deleted
+ * (deactivation, role changes, profile edits). Instantiated by Hibernate through Spring.
+ */
+public class UserCacheInvalidationListener {
+
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @PostUpdate
+    @PostRemove
+    public void evict(User user) {
+        principalCache.invalidate(user.getId());
+    }
+}
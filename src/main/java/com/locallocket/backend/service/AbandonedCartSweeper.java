@@ -0,0 +1,100 @@
+package com.locallocket.backend.service;
+
+import com.locallocket.backend.repository.CartRepository;
+import com.locallocket.backend.repository.CartWriteRepository.DeletedCarts;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+/**
+ * Deletes carts nobody has changed for {@code cart.abandoned.ttl-days}, so abandoned carts do not pile
+ * up in the tables every cart lookup reads. Carts are walked in id order and deleted a batch at a
+ * time, each batch in its own short transaction with one statement per table.
+ */
+@Component
+public class AbandonedCartSweeper {
+
+    private static final Logger logger = LoggerFactory.getLogger(AbandonedCartSweeper.class);
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${cart.abandoned.ttl-days:30}")
+    private long ttlDays;
+
+    @Value("${cart.abandoned.sweep.batch-size:500}")
+    private int batchSize;
+
+    private TransactionTemplate transaction;
+
+    private Counter cartsDeleted;
+    private Counter itemsDeleted;
+    private Timer duration;
+    private Timer batchDuration;
+
+    @PostConstruct
+    void init() {
+        this.transaction = new TransactionTemplate(transactionManager);
+
+        this.cartsDeleted = meterRegistry.counter("cart.sweep.carts.deleted");
+        this.itemsDeleted = meterRegistry.counter("cart.sweep.items.deleted");
+        this.duration = meterRegistry.timer("cart.sweep.duration");
+        this.batchDuration = meterRegistry.timer("cart.sweep.batch.duration");
+    }
+
+    @Scheduled(cron = "${cart.abandoned.sweep.cron:0 45 3 * * *}")
+    public void sweep() {
+        duration.record(this::run);
+    }
+
+    private void run() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(ttlDays);
+        int carts = 0;
+        int items = 0;
+        long afterId = 0;
+        DeletedCarts batch;
+        do {
+            long startId = afterId;
+            try {
+                batch = batchDuration.recordCallable(() ->
+                        transaction.execute(status -> cartRepository.deleteAbandoned(cutoff, startId, batchSize)));
+            } catch (Exception e) {
+                // The next run starts over from the beginning
+                logger.error("Error deleting abandoned carts after id {}: ", afterId, e);
+                break;
+            }
+            // Copies still held in memory would otherwise be written back as if the carts were new
+            cartStore.forgetDeleted(batch.userIds());
+
+            afterId = batch.lastCartId();
+            carts += batch.userIds().size();
+            items += batch.items();
+            cartsDeleted.increment(batch.userIds().size());
+            itemsDeleted.increment(batch.items());
+        } while (batch.userIds().size() == batchSize);
+
+        if (carts > 0) {
+            logger.info("Deleted {} abandoned carts with {} items, unchanged since {}", carts, items, cutoff);
+        }
+    }
+}
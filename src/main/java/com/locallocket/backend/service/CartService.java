@@ -7,21 +7,24 @@ import com.locallocket.backend.exception.VendorConflictException;
 import com.locallocket.backend.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
-
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Cart operations on top of the {@link CartStore}. Products are read from the database, since
+ * their price and stock decide what may go in the cart; the cart itself is only read and changed
+ * through the store, and every change is made on a copy that is kept only if it succeeds.
+ */
 @Service
 public class CartService {
 
     @Autowired
-    private CartRepository cartRepository;
-
-    @Autowired
-    private CartItemRepository cartItemRepository;
+    private CartStore cartStore;
 
     @Autowired
     private ProductRepository productRepository;
@@ -93,10 +96,9 @@ public class CartService {
 //        return new CartResponse(cart, "Item added successfully to your cart from " + product.getVendor().getShopName());
 //    }
 
-    @Transactional
     public CartResponse addToCart(User user, AddToCartRequest request) {
         // Get product
-        Product product = productRepository.findById(request.getProductId())
+        Product product = productRepository.findWithVendorById(request.getProductId())
                 .orElseThrow(() -> new BadRequestException("Product not found"));
 
         if (!product.getIsActive()) {
@@ -107,120 +109,118 @@ public class CartService {
             throw new BadRequestException("Insufficient stock. Available: " + product.getStock());
         }
 
-        // Use the same safe method for getting/creating cart
-        Cart cart = getOrCreateCartSafely(user, product.getVendor());
+        Cart updated = cartStore.update(user, current -> {
+            // Use the same safe method for getting/creating cart
+            Cart cart = getOrCreateCartSafely(user, current, product.getVendor());
 
-        // Check if item already exists in cart
-        Optional<CartItem> existingItem = cartItemRepository.findByCartAndProduct(cart, product);
+            // Check if item already exists in cart
+            CartItem existingItem = findItemByProduct(cart, product.getId());
 
-        if (existingItem.isPresent()) {
-            // Update existing item
-            CartItem item = existingItem.get();
-            int newQuantity = item.getQuantity() + request.getQuantity();
+            if (existingItem != null) {
+                // Update existing item
+                int newQuantity = existingItem.getQuantity() + request.getQuantity();
 
-            if (product.getStock() < newQuantity) {
-                throw new BadRequestException("Cannot add more. Available stock: " + product.getStock());
-            }
+                if (product.getStock() < newQuantity) {
+                    throw new BadRequestException("Cannot add more. Available stock: " + product.getStock());
+                }
 
-            item.setQuantity(newQuantity);
-            cartItemRepository.save(item);
-        } else {
-            // Add new item
-            CartItem newItem = new CartItem(cart, product, request.getQuantity(), product.getPrice());
-            cartItemRepository.save(newItem);
-            cart.addItem(newItem);
-        }
+                existingItem.setProduct(product);
+                existingItem.setQuantity(newQuantity);
+            } else {
+                // Add new item
+                cart.addItem(new CartItem(cart, product, request.getQuantity(), product.getPrice()));
+            }
 
-        // Recalculate cart totals
-        recalculateCartTotals(cart);
-        cartRepository.save(cart);
+            // Recalculate cart totals
+            recalculateCartTotals(cart);
+            return cart;
+        });
 
-        return new CartResponse(cart, "Item added successfully to your cart from " + product.getVendor().getShopName());
+        return new CartResponse(updated, "Item added successfully to your cart from " + product.getVendor().getShopName());
     }
 
-
-
-    @Transactional(readOnly = true)
     public CartResponse getCart(User user) {
-        Optional<Cart> cart = cartRepository.findByUser(user);
-        return cart.map(CartResponse::new).orElse(null);
+        Cart cart = cartStore.get(user);
+        return cart != null ? new CartResponse(cart) : null;
     }
 
-    @Transactional
-    public CartResponse updateCartItem(User user, Long cartItemId, UpdateCartItemRequest request) {
-        Cart cart = cartRepository.findByUser(user)
-                .orElseThrow(() -> new BadRequestException("Cart not found"));
-
-        CartItem cartItem = cartItemRepository.findById(cartItemId)
-                .orElseThrow(() -> new BadRequestException("Cart item not found"));
+    public CartSummaryResponse getCartSummary(User user) {
+        return cartStore.summarize(user);
+    }
 
-        if (!cartItem.getCart().getId().equals(cart.getId())) {
-            throw new BadRequestException("Cart item does not belong to your cart");
+    public CartResponse updateCartItem(User user, Long cartItemId, UpdateCartItemRequest request) {
+        Cart cart = cartStore.get(user);
+        if (cart == null) {
+            throw new BadRequestException("Cart not found");
         }
+        CartItem cartItem = findItem(cart, cartItemId);
 
-        // Check stock availability
-        if (cartItem.getProduct().getStock() < request.getQuantity()) {
-            throw new BadRequestException("Insufficient stock. Available: " + cartItem.getProduct().getStock());
+        // Check stock availability against the product as it is now
+        Product product = productRepository.findById(cartItem.getProduct().getId())
+                .orElseThrow(() -> new BadRequestException("Product not found"));
+        if (product.getStock() < request.getQuantity()) {
+            throw new BadRequestException("Insufficient stock. Available: " + product.getStock());
         }
 
-        cartItem.setQuantity(request.getQuantity());
-        cartItemRepository.save(cartItem);
+        Cart updated = cartStore.update(user, current -> {
+            if (current == null) {
+                throw new BadRequestException("Cart not found");
+            }
+            CartItem item = findItem(current, cartItemId);
+            item.setProduct(product);
+            item.setQuantity(request.getQuantity());
 
-        // Recalculate totals
-        recalculateCartTotals(cart);
-        cartRepository.save(cart);
+            // Recalculate totals
+            recalculateCartTotals(current);
+            return current;
+        });
 
-        return new CartResponse(cart);
+        return new CartResponse(updated);
     }
 
-    @Transactional
     public void removeCartItem(User user, Long cartItemId) {
-        Cart cart = cartRepository.findByUser(user)
-                .orElseThrow(() -> new BadRequestException("Cart not found"));
-
-        CartItem cartItem = cartItemRepository.findById(cartItemId)
-                .orElseThrow(() -> new BadRequestException("Cart item not found"));
-
-        if (!cartItem.getCart().getId().equals(cart.getId())) {
-            throw new BadRequestException("Cart item does not belong to your cart");
-        }
-
-        cart.removeItem(cartItem);
-        cartItemRepository.delete(cartItem);
+        cartStore.update(user, cart -> {
+            if (cart == null) {
+                throw new BadRequestException("Cart not found");
+            }
+            cart.removeItem(findItem(cart, cartItemId));
 
-        if (cart.getItems().isEmpty()) {
-            // Delete empty cart
-            cartRepository.delete(cart);
-        } else {
+            if (cart.getItems().isEmpty()) {
+                // Delete empty cart
+                return null;
+            }
             // Recalculate totals
             recalculateCartTotals(cart);
-            cartRepository.save(cart);
-        }
+            return cart;
+        });
     }
 
-    @Transactional
     public void clearCart(User user) {
-        Optional<Cart> cart = cartRepository.findByUser(user);
-        cart.ifPresent(cartRepository::delete);
+        cartStore.update(user, cart -> null);
     }
 
-    @Transactional
     public CartResponse switchVendor(User user, Long newVendorId) {
         Vendor newVendor = vendorRepository.findById(newVendorId)
                 .orElseThrow(() -> new BadRequestException("Vendor not found"));
 
-        // Clear existing cart
-        clearCart(user);
-
-        // Create new cart for new vendor
-        Cart newCart = createNewCart(user, newVendor);
+        // Replace the existing cart with an empty one for the new vendor
+        Cart newCart = cartStore.update(user, cart -> new Cart(user, newVendor));
 
         return new CartResponse(newCart, "Switched to " + newVendor.getShopName() + ". Your previous cart was cleared.");
     }
 
-    private Cart createNewCart(User user, Vendor vendor) {
-        Cart cart = new Cart(user, vendor);
-        return cartRepository.save(cart);
+    private CartItem findItem(Cart cart, Long cartItemId) {
+        return cart.getItems().stream()
+                .filter(item -> item.getId().equals(cartItemId))
+                .findFirst()
+                .orElseThrow(() -> new BadRequestException("Cart item not found"));
+    }
+
+    private CartItem findItemByProduct(Cart cart, Long productId) {
+        return cart.getItems().stream()
+                .filter(item -> item.getProduct().getId().equals(productId))
+                .findFirst()
+                .orElse(null);
     }
 
     private void recalculateCartTotals(Cart cart) {
@@ -334,7 +334,10 @@ public class CartService {
 //                totalItemsAdded + " items added successfully to your cart from " + vendor.getShopName());
 //    }
 
-    @Transactional
+    /**
+     * Add several products at once, e.g. a reorder. The products are read in one query and the
+     * cart is changed once for all of them.
+     */
     public CartResponse addMultipleProductsToCart(User user, AddMultipleProductsRequest request) {
         List<AddMultipleProductsRequest.ProductItem> products = request.getProducts();
 
@@ -342,19 +345,28 @@ public class CartService {
             throw new BadRequestException("Products list cannot be empty");
         }
 
+        // The same product listed twice is added once with the combined quantity
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (AddMultipleProductsRequest.ProductItem item : products) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+
         // Step 1: Validate all products exist and belong to the same vendor
+        Map<Long, Product> found = productRepository.findAllWithVendorByIdIn(quantities.keySet()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
         Vendor vendor = null;
-        List<Product> validatedProducts = new ArrayList<>();
 
-        for (AddMultipleProductsRequest.ProductItem item : products) {
-            Product product = productRepository.findById(item.getProductId())
-                    .orElseThrow(() -> new BadRequestException("Product not found: " + item.getProductId()));
+        for (Map.Entry<Long, Integer> item : quantities.entrySet()) {
+            Product product = found.get(item.getKey());
+            if (product == null) {
+                throw new BadRequestException("Product not found: " + item.getKey());
+            }
 
             if (!product.getIsActive()) {
                 throw new BadRequestException("Product is not available: " + product.getName());
             }
 
-            if (product.getStock() < item.getQuantity()) {
+            if (product.getStock() < item.getValue()) {
                 throw new BadRequestException("Insufficient stock for " + product.getName());
             }
 
@@ -364,72 +376,58 @@ public class CartService {
             } else if (!vendor.getId().equals(product.getVendor().getId())) {
                 throw new BadRequestException("All products must be from the same vendor");
             }
-
-            validatedProducts.add(product);
         }
 
-        // Step 2: Get or handle existing cart - THIS IS THE KEY FIX
-        Cart cart = getOrCreateCartSafely(user, vendor);
+        Vendor cartVendor = vendor;
+        Cart updated = cartStore.update(user, current -> {
+            // Step 2: Get or handle existing cart
+            Cart cart = getOrCreateCartSafely(user, current, cartVendor);
 
-        // Step 3: Add or update each product in the cart
-        int totalItemsAdded = 0;
-        for (int i = 0; i < products.size(); i++) {
-            AddMultipleProductsRequest.ProductItem item = products.get(i);
-            Product product = validatedProducts.get(i);
+            // Step 3: Add or update each product in the cart
+            for (Map.Entry<Long, Integer> item : quantities.entrySet()) {
+                Product product = found.get(item.getKey());
+                CartItem existingItem = findItemByProduct(cart, product.getId());
 
-            Optional<CartItem> existingItem = cartItemRepository.findByCartAndProduct(cart, product);
+                if (existingItem != null) {
+                    int newQuantity = existingItem.getQuantity() + item.getValue();
 
-            if (existingItem.isPresent()) {
-                // Update existing item
-                CartItem cartItem = existingItem.get();
-                int newQuantity = cartItem.getQuantity() + item.getQuantity();
+                    if (product.getStock() < newQuantity) {
+                        throw new BadRequestException("Cannot add " + item.getValue() + " more " + product.getName());
+                    }
 
-                if (product.getStock() < newQuantity) {
-                    throw new BadRequestException("Cannot add " + item.getQuantity() + " more " + product.getName());
+                    existingItem.setProduct(product);
+                    existingItem.setQuantity(newQuantity);
+                } else {
+                    cart.addItem(new CartItem(cart, product, item.getValue(), product.getPrice()));
                 }
-
-                cartItem.setQuantity(newQuantity);
-                cartItemRepository.save(cartItem);
-                totalItemsAdded += item.getQuantity();
-            } else {
-                // Add new item
-                CartItem newItem = new CartItem(cart, product, item.getQuantity(), product.getPrice());
-                cartItemRepository.save(newItem);
-                cart.addItem(newItem);
-                totalItemsAdded += item.getQuantity();
             }
-        }
 
-        // Step 4: Recalculate cart totals
-        recalculateCartTotals(cart);
-        cartRepository.save(cart);
+            // Step 4: Recalculate cart totals
+            recalculateCartTotals(cart);
+            return cart;
+        });
 
-        return new CartResponse(cart,
+        int totalItemsAdded = quantities.values().stream().mapToInt(Integer::intValue).sum();
+        return new CartResponse(updated,
                 totalItemsAdded + " items added successfully to your cart from " + vendor.getShopName());
     }
 
-    // NEW METHOD: Safe cart creation/retrieval
-    private Cart getOrCreateCartSafely(User user, Vendor vendor) {
-        Optional<Cart> existingCart = cartRepository.findByUser(user);
-
-        if (existingCart.isPresent()) {
-            Cart cart = existingCart.get();
-
+    // Safe cart creation/retrieval
+    private Cart getOrCreateCartSafely(User user, Cart existingCart, Vendor vendor) {
+        if (existingCart != null) {
             // Check vendor conflict
-            if (!cart.getVendor().getId().equals(vendor.getId())) {
+            if (!existingCart.getVendor().getId().equals(vendor.getId())) {
                 throw new VendorConflictException(
-                        "Your cart contains items from " + cart.getVendor().getShopName() +
+                        "Your cart contains items from " + existingCart.getVendor().getShopName() +
                                 ". You can only add products from one vendor at a time. Please complete your current order or clear your cart to shop from " +
                                 vendor.getShopName() + "."
                 );
             }
 
-            return cart; // Return existing cart
-        } else {
-            // Create new cart only if none exists
-            Cart newCart = new Cart(user, vendor);
-            return cartRepository.save(newCart); // Use save() instead of manual insert
+            return existingCart; // Return existing cart
         }
+        // Create new cart only if none exists
+        return new Cart(user, vendor);
     }
 
 
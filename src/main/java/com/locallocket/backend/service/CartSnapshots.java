@@ -0,0 +1,103 @@
+package com.locallocket.backend.service;
+
+import com.locallocket.backend.entity.Cart;
+import com.locallocket.backend.entity.CartItem;
+import com.locallocket.backend.entity.Product;
+import com.locallocket.backend.entity.User;
+import com.locallocket.backend.entity.Vendor;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Deep copies of carts made of plain objects, safe to keep and read outside the persistence context.
+ * Products and the vendor keep only what the cart and its responses use.
+ */
+final class CartSnapshots {
+
+    private CartSnapshots() {}
+
+    static Cart copy(Cart cart) {
+        if (cart == null) {
+            return null;
+        }
+
+        Cart copy = new Cart(cart.getUser(), copy(cart.getVendor()));
+        copy.setId(cart.getId());
+        copy.setSubtotal(cart.getSubtotal());
+        copy.setPlatformFee(cart.getPlatformFee());
+        copy.setDeliveryFee(cart.getDeliveryFee());
+        copy.setTotalAmount(cart.getTotalAmount());
+        copy.setCreatedAt(cart.getCreatedAt());
+        copy.setUpdatedAt(cart.getUpdatedAt());
+        copy.setVersion(cart.getVersion());
+
+        Map<Long, Product> products = new HashMap<>();
+        for (CartItem item : cart.getItems()) {
+            Product product = products.computeIfAbsent(item.getProduct().getId(), id -> copy(item.getProduct()));
+            CartItem itemCopy = new CartItem(copy, product, item.getQuantity(), item.getPriceAtTime());
+            itemCopy.setId(item.getId());
+            itemCopy.setTotalPrice(item.getTotalPrice());
+            itemCopy.setCreatedAt(item.getCreatedAt());
+            itemCopy.setVersion(item.getVersion());
+            copy.getItems().add(itemCopy);
+        }
+        return copy;
+    }
+
+    /**
+     * Fill in what a cart coming back from a change may lack: ids for new carts and items, and timestamps.
+     * The cart's version moves on by one, as every change is a new version of it.
+     */
+    static void complete(Cart cart, User user, IntFunction<List<Long>> cartIds, IntFunction<List<Long>> itemIds) {
+        LocalDateTime now = LocalDateTime.now();
+        cart.setUser(user);
+        if (cart.getId() == null) {
+            cart.setId(cartIds.apply(1).get(0));
+        }
+        if (cart.getCreatedAt() == null) {
+            cart.setCreatedAt(now);
+        }
+        cart.setUpdatedAt(now);
+        cart.setVersion(cart.getVersion() == null ? 0L : cart.getVersion() + 1);
+
+        long missing = cart.getItems().stream().filter(item -> item.getId() == null).count();
+        Iterator<Long> ids = missing > 0 ? itemIds.apply((int) missing).iterator() : null;
+        for (CartItem item : cart.getItems()) {
+            item.setCart(cart);
+            if (item.getId() == null) {
+                item.setId(ids.next());
+            }
+            if (item.getCreatedAt() == null) {
+                item.setCreatedAt(now);
+            }
+            if (item.getVersion() == null) {
+                item.setVersion(0L);
+            }
+        }
+    }
+
+    private static Product copy(Product product) {
+        Product copy = new Product();
+        copy.setId(product.getId());
+        copy.setName(product.getName());
+        copy.setDescription(product.getDescription());
+        copy.setPrice(product.getPrice());
+        copy.setImageUrl(product.getImageUrl());
+        copy.setStock(product.getStock());
+        copy.setIsActive(product.getIsActive());
+        return copy;
+    }
+
+    private static Vendor copy(Vendor vendor) {
+        Vendor copy = new Vendor();
+        copy.setId(vendor.getId());
+        copy.setShopName(vendor.getShopName());
+        copy.setAddress(vendor.getAddress());
+        return copy;
+    }
+}
@@ -0,0 +1,57 @@
+package com.locallocket.backend.service;
+
+import com.locallocket.backend.dto.cart.CartSummaryResponse;
+import com.locallocket.backend.entity.Cart;
+import com.locallocket.backend.entity.User;
+
+import java.util.Collection;
+import java.util.function.UnaryOperator;
+
+/**
+ * Where customers' carts live between requests. Carts handed out are detached copies built from
+ * plain objects: changing one has no effect until it goes back through {@link #update}.
+ * <p>
+ * Checkout reads the cart through JPA, so it calls {@link #flush} first and {@link #evict} once the
+ * order has taken the cart's place.
+ */
+public interface CartStore {
+
+    /**
+     * The user's cart, or null if they have none
+     */
+    Cart get(User user);
+
+    /**
+     * Totals of the user's cart, or null if they have none; cheaper than {@link #get}
+     */
+    CartSummaryResponse summarize(User user);
+
+    /**
+     * Replace the user's cart with what {@code change} makes of it, atomically with respect to other
+     * changes to the same cart. The change gets a copy of the current cart (null if there is none)
+     * and returns the cart to keep, or null to delete it; if it throws, nothing is kept. It must not
+     * do any I/O, and may be applied more than once if the cart changed underneath it. Ids,
+     * timestamps and the version are filled in before the cart is kept.
+     *
+     * @return a copy of the kept cart, or null if it was deleted
+     * @throws org.springframework.dao.OptimisticLockingFailureException if the cart kept changing underneath it
+     */
+    Cart update(User user, UnaryOperator<Cart> change);
+
+    /**
+     * Make sure the database has the user's latest cart, within the caller's transaction if there is one
+     */
+    void flush(User user);
+
+    /**
+     * Forget the user's cart, after the caller's transaction commits if there is one, so it is read
+     * from the database next time
+     */
+    void evict(User user);
+
+    /**
+     * These users' carts were deleted from the database without going through the store. Drop any
+     * held copies with nothing left to write; a cart changed since is kept, and written back as new.
+     */
+    void forgetDeleted(Collection<Long> userIds);
+}
@@ -8,6 +8,7 @@ import com.locallocket.backend.exception.BadRequestException;
 import com.locallocket.backend.repository.ProductRepository;
 import com.locallocket.backend.repository.VendorRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
@@ -15,42 +16,43 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 public class CustomerProductService {
 
+    private static final double KM_PER_DEGREE_LAT = 111.32;
+
     @Autowired
     private VendorRepository vendorRepository;
 
     @Autowired
     private ProductRepository productRepository;
 
-    @Transactional(readOnly = true)
+    @Autowired
+    private VendorSpatialIndex vendorSpatialIndex;
+
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Value("${location.max.radius:20.0}")
+    private double maxRadiusKm;
+
     public Page<VendorResponse> getNearbyVendors(Double lat, Double lon, Integer radiusMeters, Pageable pageable) {
-        // Convert meters to kilometers for calculation
-        double radiusKm = radiusMeters / 1000.0;
-
-        // Get all active vendors
-        List<Vendor> allVendors = vendorRepository.findByIsActiveTrue();
-
-        // Filter vendors within radius and calculate distance
-        List<VendorResponse> nearbyVendors = allVendors.stream()
-                .filter(vendor -> vendor.getLatitude() != null && vendor.getLongitude() != null)
-                .map(vendor -> {
-                    double distanceKm = calculateDistance(lat, lon, vendor.getLatitude(), vendor.getLongitude());
-                    return new VendorResponse(vendor, distanceKm);
-                })
-                .filter(vendorResponse -> vendorResponse.getDistance() <= radiusKm) // Compare KM to KM
-                .sorted((v1, v2) -> Double.compare(v1.getDistance(), v2.getDistance()))
-                .collect(Collectors.toList());
+        double radiusKm = radiusKm(radiusMeters);
+
+        // Served from the in-memory spatial index, nearest first - no database round trip
+        List<VendorSpatialIndex.VendorHit> hits = vendorSpatialIndex.withinRadius(lat, lon, radiusKm);
 
         // Manual pagination
-        int start = (int) pageable.getOffset();
-        int end = Math.min((start + pageable.getPageSize()), nearbyVendors.size());
+        int start = (int) Math.min(pageable.getOffset(), hits.size());
+        int end = Math.min((start + pageable.getPageSize()), hits.size());
 
-        List<VendorResponse> pageContent = nearbyVendors.subList(start, end);
-        return new PageImpl<>(pageContent, pageable, nearbyVendors.size());
+        List<VendorResponse> pageContent = hits.subList(start, end).stream()
+                .map(this::toVendorResponse)
+                .collect(Collectors.toList());
+        return new PageImpl<>(pageContent, pageable, hits.size());
     }
 
 
@@ -66,6 +68,8 @@ public class CustomerProductService {
         Page<Product> productsPage;
         if (query == null || query.trim().isEmpty()) {
             productsPage = productRepository.findByVendorAndIsActiveTrue(vendor, pageable);
+        } else if (productSearchIndex.supports(query)) {
+            productsPage = productSearchIndex.searchPage(query, Set.of(vendor.getId()), true, pageable);
         } else {
             productsPage = productRepository.findByVendorAndIsActiveTrueAndNameContainingIgnoreCase(
                     vendor, query.trim(), pageable);
@@ -82,15 +86,27 @@ public class CustomerProductService {
 
         Page<Product> allProducts;
 
-        if (lat != null && lon != null) {
-            // Location-based search: first get nearby vendors, then search their products
-            List<Vendor> nearbyVendors = vendorRepository.findByIsActiveTrue().stream()
-                    .filter(vendor -> vendor.getLatitude() != null && vendor.getLongitude() != null)
-                    .filter(vendor -> calculateDistance(lat, lon, vendor.getLatitude(), vendor.getLongitude()) <= radius)
-                    .collect(Collectors.toList());
-
-            allProducts = productRepository.findByVendorInAndIsActiveTrueAndNameContainingIgnoreCase(
-                    nearbyVendors, query.trim(), pageable);
+        if (productSearchIndex.supports(query)) {
+            // Ranked search from the in-memory index; location narrows it to vendors within the radius
+            Set<Long> vendorIds = null;
+            if (lat != null && lon != null) {
+                vendorIds = vendorSpatialIndex.withinRadius(lat, lon, radiusKm(radius)).stream()
+                        .map(hit -> hit.vendor().id())
+                        .collect(Collectors.toSet());
+            }
+            allProducts = productSearchIndex.searchPage(query, vendorIds, true, pageable);
+        } else if (lat != null && lon != null) {
+            // Location-based search: radius filter and product match run as a single query
+            double radiusKm = radiusKm(radius);
+            double latDelta = radiusKm / KM_PER_DEGREE_LAT;
+            double lonDelta = Math.min(radiusKm / (KM_PER_DEGREE_LAT * Math.max(Math.cos(Math.toRadians(lat)), 0.01)), 180.0);
+
+            allProducts = productRepository.findActiveByNameNearLocation(
+                    query.trim(),
+                    lat - latDelta, lat + latDelta,
+                    lon - lonDelta, lon + lonDelta,
+                    Math.toRadians(lat), Math.toRadians(lon), Math.PI / 180.0,
+                    radiusKm, pageable);
         } else {
             // Global search across all vendors
             allProducts = productRepository.findByIsActiveTrueAndNameContainingIgnoreCase(query.trim(), pageable);
@@ -127,6 +143,28 @@ public class CustomerProductService {
         return new VendorResponse(vendor);
     }
 
+    // Radius from the request, in meters, capped at location.max.radius (km)
+    private double radiusKm(Integer radiusMeters) {
+        return Math.min(Math.max(radiusMeters, 0) / 1000.0, maxRadiusKm);
+    }
+
+    private VendorResponse toVendorResponse(VendorSpatialIndex.VendorHit hit) {
+        VendorSpatialIndex.VendorLocation location = hit.vendor();
+
+        VendorResponse response = new VendorResponse();
+        response.setId(location.id());
+        response.setShopName(location.shopName());
+        response.setDescription(location.description());
+        response.setAddress(location.address());
+        response.setLatitude(location.latitude());
+        response.setLongitude(location.longitude());
+        response.setIsActive(true);
+        response.setCreatedAt(location.createdAt());
+        response.setUpdatedAt(location.updatedAt());
+        response.setDistance(hit.distanceKm());
+        return response;
+    }
+
 //    // Haversine formula to calculate distance between two points
 //    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
 //        final int R = 6371; // Radius of the earth in km
@@ -141,23 +179,4 @@ public class CustomerProductService {
 //
 //        return distance;
 //    }
-
-    // Add this method to your CustomerProductService class
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        // Haversine formula to calculate distance between two coordinates in kilometers
-        double earthRadius = 6371; // Earth radius in kilometers
-
-        double lat1Rad = Math.toRadians(lat1);
-        double lat2Rad = Math.toRadians(lat2);
-        double deltaLat = Math.toRadians(lat2 - lat1);
-        double deltaLon = Math.toRadians(lon2 - lon1);
-
-        double a = Math.sin(deltaLat / 2) * Math.sin(deltaLat / 2) +
-                Math.cos(lat1Rad) * Math.cos(lat2Rad) *
-                        Math.sin(deltaLon / 2) * Math.sin(deltaLon / 2);
-
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-
-        return earthRadius * c; // Distance in kilometers
-    }
 }
@@ -0,0 +1,107 @@
+package com.locallocket.backend.service;
+
+import com.locallocket.backend.dto.cart.CartSummaryResponse;
+import com.locallocket.backend.entity.Cart;
+import com.locallocket.backend.entity.User;
+import com.locallocket.backend.repository.CartRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.function.UnaryOperator;
+
+/**
+ * Reads and writes every change straight through to the database. The default store, and the only
+ * one safe with more than one instance, where a cart held in one instance's memory would go unseen
+ * by the others.
+ */
+@Component
+@ConditionalOnProperty(name = "cart.store.type", havingValue = "database", matchIfMissing = true)
+public class DatabaseCartStore implements CartStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseCartStore.class);
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${cart.store.max-attempts:3}")
+    private int maxAttempts;
+
+    private TransactionTemplate transaction;
+    private TransactionTemplate readOnlyTransaction;
+
+    @PostConstruct
+    void init() {
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @Override
+    public Cart get(User user) {
+        return readOnlyTransaction.execute(status ->
+                cartRepository.findWithItemsByUser(user).map(CartSnapshots::copy).orElse(null));
+    }
+
+    @Override
+    public CartSummaryResponse summarize(User user) {
+        return cartRepository.findSummaryByUser(user).orElse(null);
+    }
+
+    /**
+     * Read, change and write back the cart without locking it first. If another request changed the
+     * cart in between, the write finds a newer version and the change is applied again to the cart
+     * as it now is, up to {@code cart.store.max-attempts} times. The losing write has already waited
+     * for the winner to commit, so the next read sees its result.
+     */
+    @Override
+    public Cart update(User user, UnaryOperator<Cart> change) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transaction.execute(status -> {
+                    Cart current = cartRepository.findWithItemsByUser(user).map(CartSnapshots::copy).orElse(null);
+                    Cart updated = change.apply(CartSnapshots.copy(current));
+                    if (updated != null) {
+                        updated = CartSnapshots.copy(updated);
+                        CartSnapshots.complete(updated, user, cartRepository::nextCartIds, cartRepository::nextCartItemIds);
+                    }
+                    if (!cartRepository.replaceCart(user.getId(), current, updated)) {
+                        throw new ObjectOptimisticLockingFailureException(Cart.class, current != null ? current.getId() : user.getId());
+                    }
+                    return updated;
+                });
+            } catch (ObjectOptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                logger.debug("Cart of user {} changed concurrently, retrying (attempt {})", user.getId(), attempt);
+            }
+        }
+    }
+
+    @Override
+    public void flush(User user) {
+        // Always written through
+    }
+
+    @Override
+    public void evict(User user) {
+        // Nothing held
+    }
+
+    @Override
+    public void forgetDeleted(Collection<Long> userIds) {
+        // Nothing held
+    }
+}
@@ -0,0 +1,529 @@
+package com.locallocket.backend.service;
+
+import com.locallocket.backend.dto.cart.CartSummaryResponse;
+import com.locallocket.backend.entity.Cart;
+import com.locallocket.backend.entity.User;
+import com.locallocket.backend.repository.CartRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Keeps carts in memory and writes them behind to the database.
+ * <p>
+ * Carts are spread over shards by user id; each shard is a small LRU map guarded by its own lock, so
+ * requests for different users rarely wait on each other, and changes to the same cart take turns
+ * rather than conflict. A user's cart is read from the database the first time it is asked for, and
+ * after that reads and changes touch only memory.
+ * <p>
+ * Changed carts are written back in batches every few seconds, and a shard's least recently used
+ * carts are written back and dropped once they sit idle or the shard grows past its share of
+ * {@code cart.store.max-entries}. The carts to write are picked under the shard's lock and written
+ * without it, so requests are not held up by the database; a cart changed while its write was under
+ * way stays marked as changed for the next round. A crash loses at most the last few seconds of cart
+ * changes.
+ * <p>
+ * A cart being checked out is left to checkout: it is not written back from the time checkout
+ * flushes it until its transaction ends, so a late write cannot bring back a cart the order
+ * deleted.
+ * <p>
+ * Only for a single instance, and only used when {@code cart.store.type=memory}. Each instance would
+ * keep its own copy of a cart, and write-back from one would overwrite changes made through another.
+ */
+@Component
+@ConditionalOnProperty(name = "cart.store.type", havingValue = "memory")
+public class InMemoryCartStore implements CartStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryCartStore.class);
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${cart.store.shards:64}")
+    private int shardCount;
+
+    @Value("${cart.store.max-entries:100000}")
+    private int maxEntries;
+
+    @Value("${cart.store.idle-timeout-ms:1800000}")
+    private long idleTimeoutMs;
+
+    @Value("${cart.store.id-block-size:100}")
+    private int idBlockSize;
+
+    private TransactionTemplate transaction;
+    private TransactionTemplate readOnlyTransaction;
+
+    private Shard[] shards;
+    private int maxEntriesPerShard;
+    private IdBlock cartIds;
+    private IdBlock cartItemIds;
+
+    // Write-back of a shard that outgrew its share, off the request thread
+    private final ExecutorService evictor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("cart-store-evictor").factory());
+
+    private final AtomicBoolean evictionQueued = new AtomicBoolean();
+
+    @PostConstruct
+    void init() {
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+
+        // A power of two so the shard is picked with a mask
+        int count = Integer.highestOneBit(Math.max(1, shardCount - 1)) << 1;
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard();
+        }
+        this.maxEntriesPerShard = Math.max(1, maxEntries / count);
+        this.cartIds = new IdBlock(cartRepository::nextCartIds, idBlockSize);
+        this.cartItemIds = new IdBlock(cartRepository::nextCartItemIds, idBlockSize);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        evictor.shutdown();
+        // Everything still unwritten goes out before the application stops
+        for (Shard shard : shards) {
+            writeBack(shard, true);
+        }
+    }
+
+    @Override
+    public Cart get(User user) {
+        Shard shard = shard(user.getId());
+        Entry entry = lock(shard, user);
+        try {
+            return CartSnapshots.copy(entry.cart);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * Summed from the held cart without copying it; no query once the cart is held
+     */
+    @Override
+    public CartSummaryResponse summarize(User user) {
+        Shard shard = shard(user.getId());
+        Entry entry = lock(shard, user);
+        try {
+            return entry.cart != null ? new CartSummaryResponse(entry.cart) : null;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    @Override
+    public Cart update(User user, UnaryOperator<Cart> change) {
+        Shard shard = shard(user.getId());
+        while (true) {
+            int cartIdsNeeded = 0;
+            int itemIdsNeeded = 0;
+            Entry entry = lock(shard, user);
+            try {
+                Cart updated = change.apply(CartSnapshots.copy(entry.cart));
+                if (updated != null) {
+                    updated = CartSnapshots.copy(updated);
+                    cartIdsNeeded = updated.getId() == null ? 1 : 0;
+                    itemIdsNeeded = (int) updated.getItems().stream().filter(item -> item.getId() == null).count();
+                    List<Long> newCartIds = cartIds.tryTake(cartIdsNeeded);
+                    List<Long> newItemIds = cartItemIds.tryTake(itemIdsNeeded);
+                    if (newCartIds == null || newItemIds == null) {
+                        cartIds.putBack(newCartIds);
+                        cartItemIds.putBack(newItemIds);
+                        updated = null;
+                    } else {
+                        CartSnapshots.complete(updated, user, count -> newCartIds, count -> newItemIds);
+                    }
+                }
+                if (updated != null || cartIdsNeeded + itemIdsNeeded == 0) {
+                    entry.cart = updated;
+                    entry.dirty = true;
+                    entry.generation++;
+                    return CartSnapshots.copy(updated);
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+            // Out of ids: fetch more with no lock held, then apply the change afresh to the cart as it is by then
+            cartIds.refill(cartIdsNeeded);
+            cartItemIds.refill(itemIdsNeeded);
+        }
+    }
+
+    @Override
+    public void flush(User user) {
+        Shard shard = shard(user.getId());
+        Entry entry;
+        Cart cart;
+        long generation;
+        boolean dirty;
+        shard.lock.lock();
+        try {
+            // A write-back already under way may be older than the cart checkout is about to read
+            while (shard.entries.containsKey(user.getId()) && shard.entries.get(user.getId()).writing) {
+                shard.written.awaitUninterruptibly();
+            }
+            entry = shard.entries.get(user.getId());
+            if (entry == null) {
+                return;
+            }
+            entry.checkingOut = true;
+            cart = entry.cart;
+            generation = entry.generation;
+            dirty = entry.dirty;
+        } finally {
+            shard.lock.unlock();
+        }
+
+        boolean inTransaction = TransactionSynchronizationManager.isSynchronizationActive();
+        if (inTransaction) {
+            // Written in the caller's transaction; if that rolls back, the cart still needs writing
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    finishCheckout(shard, user.getId(), entry, status != STATUS_COMMITTED);
+                }
+            });
+        }
+        try {
+            if (dirty) {
+                cartRepository.replaceCarts(Collections.singletonMap(user.getId(), cart));
+                markWritten(shard, entry, generation);
+            }
+        } finally {
+            if (!inTransaction) {
+                finishCheckout(shard, user.getId(), entry, false);
+            }
+        }
+    }
+
+    @Override
+    public void evict(User user) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remove(user.getId());
+                }
+            });
+        } else {
+            remove(user.getId());
+        }
+    }
+
+    @Override
+    public void forgetDeleted(Collection<Long> userIds) {
+        for (Long userId : userIds) {
+            Shard shard = shard(userId);
+            shard.lock.lock();
+            try {
+                Entry entry = shard.entries.get(userId);
+                if (entry != null && !entry.dirty && !entry.writing) {
+                    shard.entries.remove(userId);
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cart.store.flush-interval-ms:5000}",
+            initialDelayString = "${cart.store.flush-interval-ms:5000}")
+    public void flushAll() {
+        for (Shard shard : shards) {
+            writeBack(shard, false);
+        }
+    }
+
+    /**
+     * Lock the user's shard and return their entry, reading the cart from the database first if it
+     * is not held yet. The read happens outside the lock.
+     */
+    private Entry lock(Shard shard, User user) {
+        shard.lock.lock();
+        Entry entry = shard.entries.get(user.getId());
+        if (entry != null) {
+            entry.touch();
+            return entry;
+        }
+        shard.lock.unlock();
+
+        Cart stored = readOnlyTransaction.execute(status ->
+                cartRepository.findWithItemsByUser(user).map(CartSnapshots::copy).orElse(null));
+
+        shard.lock.lock();
+        // Another request may have read it meanwhile; the first one in wins
+        entry = shard.entries.computeIfAbsent(user.getId(), id -> new Entry(stored));
+        entry.touch();
+        if (shard.entries.size() > maxEntriesPerShard) {
+            signalEviction();
+        }
+        return entry;
+    }
+
+    /**
+     * Write the shard's changed carts in one batch, then drop the ones that have been idle too long or
+     * do not fit. With {@code all}, everything changed is written and nothing is dropped. The lock is
+     * let go while the batch is written.
+     */
+    private void writeBack(Shard shard, boolean all) {
+        Map<Long, Cart> changed = new HashMap<>();
+        Map<Long, Entry> written = new HashMap<>();
+        Map<Long, Long> generations = new HashMap<>();
+        shard.lock.lock();
+        try {
+            for (Map.Entry<Long, Entry> held : shard.entries.entrySet()) {
+                Entry entry = held.getValue();
+                if (entry.dirty && !entry.writing && !entry.checkingOut) {
+                    entry.writing = true;
+                    changed.put(held.getKey(), entry.cart);
+                    written.put(held.getKey(), entry);
+                    generations.put(held.getKey(), entry.generation);
+                }
+            }
+        } finally {
+            shard.lock.unlock();
+        }
+
+        try {
+            if (!changed.isEmpty()) {
+                write(changed);
+            }
+        } finally {
+            shard.lock.lock();
+            try {
+                for (Map.Entry<Long, Entry> pending : written.entrySet()) {
+                    Entry entry = pending.getValue();
+                    entry.writing = false;
+                    // Changed again meanwhile, or not written: stays dirty for the next round
+                    if (changed.containsKey(pending.getKey()) && entry.generation == generations.get(pending.getKey())) {
+                        entry.dirty = false;
+                    }
+                }
+                shard.written.signalAll();
+                if (!all) {
+                    expire(shard);
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Drop the shard's carts that have been idle too long or do not fit, least recently used first.
+     * Carts with anything left to write are kept. Called with the shard's lock held.
+     */
+    private void expire(Shard shard) {
+        long idleBefore = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+        int excess = shard.entries.size() - maxEntriesPerShard;
+        Iterator<Entry> entries = shard.entries.values().iterator();
+        while (entries.hasNext()) {
+            Entry entry = entries.next();
+            if (excess <= 0 && entry.lastUsedNanos >= idleBefore) {
+                // Access order: everything after this was used more recently
+                break;
+            }
+            excess--;
+            if (!entry.dirty && !entry.writing && !entry.checkingOut) {
+                entries.remove();
+            }
+        }
+    }
+
+    private void write(Map<Long, Cart> changed) {
+        try {
+            transaction.executeWithoutResult(status -> cartRepository.replaceCarts(changed));
+        } catch (RuntimeException e) {
+            // One bad cart should not hold back the rest of the shard
+            logger.warn("Batched cart write-back failed, retrying carts one by one: {}", e.getMessage());
+            Iterator<Map.Entry<Long, Cart>> carts = changed.entrySet().iterator();
+            while (carts.hasNext()) {
+                Map.Entry<Long, Cart> cart = carts.next();
+                try {
+                    transaction.executeWithoutResult(status ->
+                            cartRepository.replaceCarts(Collections.singletonMap(cart.getKey(), cart.getValue())));
+                } catch (RuntimeException single) {
+                    // Kept dirty and tried again on the next round
+                    carts.remove();
+                    logger.error("Error writing back cart of user {}: ", cart.getKey(), single);
+                }
+            }
+        }
+    }
+
+    /**
+     * The cart as of {@code generation} is in the database; it is clean unless it changed since
+     */
+    private void markWritten(Shard shard, Entry entry, long generation) {
+        shard.lock.lock();
+        try {
+            if (entry.generation == generation) {
+                entry.dirty = false;
+            }
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    private void finishCheckout(Shard shard, Long userId, Entry entry, boolean rolledBack) {
+        shard.lock.lock();
+        try {
+            // Not through the map, which would count as a use; gone already if checkout evicted it
+            if (shard.entries.containsKey(userId)) {
+                entry.checkingOut = false;
+                if (rolledBack) {
+                    entry.dirty = true;
+                }
+            }
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    private void remove(Long userId) {
+        Shard shard = shard(userId);
+        shard.lock.lock();
+        try {
+            shard.entries.remove(userId);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    private void signalEviction() {
+        if (evictionQueued.compareAndSet(false, true)) {
+            try {
+                evictor.execute(() -> {
+                    evictionQueued.set(false);
+                    flushAll();
+                });
+            } catch (RejectedExecutionException e) {
+                // Shutting down; everything is written back on the way out
+                evictionQueued.set(false);
+            }
+        }
+    }
+
+    private Shard shard(Long userId) {
+        // Spread sequential ids over the shards
+        long hash = userId * 0x9E3779B97F4A7C15L;
+        return shards[(int) (hash >>> 32) & (shards.length - 1)];
+    }
+
+    private static final class Shard {
+        final ReentrantLock lock = new ReentrantLock();
+        // Signalled when a write-back round lets go of its carts
+        final Condition written = lock.newCondition();
+        // Access order, so iteration starts at the least recently used cart
+        final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    private static final class Entry {
+        // Null when the user has no cart, so asking again does not go to the database
+        Cart cart;
+        boolean dirty;
+        // Bumped on every change, so a write-back can tell whether what it wrote is still current
+        long generation;
+        // A write-back of this cart is under way outside the lock
+        boolean writing;
+        // Between checkout's flush and the end of its transaction; left alone by write-back
+        boolean checkingOut;
+        long lastUsedNanos;
+
+        Entry(Cart cart) {
+            this.cart = cart;
+        }
+
+        void touch() {
+            lastUsedNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Ids taken from a table's sequence a block at a time, so new carts and items get theirs without a round trip
+     */
+    private static final class IdBlock {
+
+        private final IntFunction<List<Long>> source;
+        private final int blockSize;
+        private final ArrayDeque<Long> ids = new ArrayDeque<>();
+
+        IdBlock(IntFunction<List<Long>> source, int blockSize) {
+            this.source = source;
+            this.blockSize = blockSize;
+        }
+
+        /**
+         * The next {@code count} ids, or null if fewer are on hand; never goes to the database
+         */
+        synchronized List<Long> tryTake(int count) {
+            if (ids.size() < count) {
+                return null;
+            }
+            List<Long> taken = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                taken.add(ids.poll());
+            }
+            return taken;
+        }
+
+        synchronized void putBack(List<Long> taken) {
+            if (taken != null) {
+                taken.forEach(ids::addFirst);
+            }
+        }
+
+        /**
+         * Make sure at least {@code count} ids are on hand. The sequence is read without holding the
+         * block, so other shards keep taking ids meanwhile; two refills at once just fetch a block each.
+         */
+        void refill(int count) {
+            synchronized (this) {
+                if (ids.size() >= count) {
+                    return;
+                }
+            }
+            List<Long> fetched = source.apply(Math.max(blockSize, count));
+            synchronized (this) {
+                ids.addAll(fetched);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.locallocket.backend.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snowflake-style order numbers: unique across app instances without touching the database.
+ * <p>
+ * Each id packs 41 bits of milliseconds since {@link #EPOCH_MILLIS}, a 10 bit node id and a 12 bit
+ * per-millisecond sequence. The clock/sequence pair lives in one AtomicLong and only ever moves
+ * forward, so ids are monotonic per node even if the wall clock steps back, and a burst of more
+ * than 4096 orders in one millisecond simply borrows the next millisecond instead of blocking.
+ * <p>
+ * Rendered as {@code ORD<yyyyMMdd>-<13 Crockford base32 chars>}, e.g. {@code ORD20261017-0A8HSARSW0MN4}.
+ */
+@Component
+public class OrderNumberGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderNumberGenerator.class);
+
+    // 2024-01-01T00:00:00Z; 41 bits of millis from here lasts until ~2093
+    static final long EPOCH_MILLIS = 1704067200000L;
+
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+
+    private static final char[] CROCKFORD = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int ENCODED_LENGTH = 13; // 63 bits / 5 bits per char, rounded up
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    @Value("${order.number.node-id:-1}")
+    private long configuredNodeId;
+
+    private long nodeId;
+
+    // (millis since epoch << SEQUENCE_BITS) | sequence of the last id handed out
+    private final AtomicLong lastState = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        if (configuredNodeId >= 0) {
+            if (configuredNodeId > MAX_NODE_ID) {
+                throw new IllegalStateException("order.number.node-id must be between 0 and " + MAX_NODE_ID);
+            }
+            nodeId = configuredNodeId;
+        } else {
+            nodeId = hostNodeId();
+            logger.warn("order.number.node-id not set; derived node id {} from the host name. " +
+                    "Set it explicitly when running more than one instance.", nodeId);
+        }
+    }
+
+    public String next() {
+        long id = nextId();
+        long millis = (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+        LocalDate date = Instant.ofEpochMilli(millis).atZone(ZoneId.systemDefault()).toLocalDate();
+        return "ORD" + date.format(DATE_FORMAT) + "-" + encode(id);
+    }
+
+    long nextId() {
+        long now = (System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        long state = lastState.updateAndGet(previous -> Math.max(now, previous + 1));
+
+        long millis = state >>> SEQUENCE_BITS;
+        long sequence = state & ((1L << SEQUENCE_BITS) - 1);
+        return (millis << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+
+    private static String encode(long id) {
+        char[] chars = new char[ENCODED_LENGTH];
+        for (int i = ENCODED_LENGTH - 1; i >= 0; i--) {
+            chars[i] = CROCKFORD[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    private static long hostNodeId() {
+        String host = System.getenv("HOSTNAME");
+        if (host == null || host.isEmpty()) {
+            try {
+                host = InetAddress.getLocalHost().getHostName();
+            } catch (UnknownHostException e) {
+                host = "localhost";
+            }
+        }
+        return Math.floorMod(host.hashCode(), MAX_NODE_ID + 1);
+    }
+}
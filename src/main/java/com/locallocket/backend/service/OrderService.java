@@ -1,7 +1,5 @@
 package com.locallocket.backend.service;
 
-import com.locallocket.backend.dto.cart.CartItemResponse;
-import com.locallocket.backend.dto.cart.CartResponse;
 import com.locallocket.backend.dto.order.*;
 import com.locallocket.backend.dto.payment.PaymentResponse;
 import com.locallocket.backend.dto.payment.RefundResponse;
@@ -10,7 +8,9 @@ import com.locallocket.backend.exception.BadRequestException;
 import com.locallocket.backend.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import com.locallocket.backend.entity.PaymentStatus;
@@ -19,26 +19,30 @@ import org.slf4j.Logger; // Add this import
 import org.slf4j.LoggerFactory;
 
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class OrderService {
 
     private static final Logger logger = LoggerFactory.getLogger(OrderService.class);
 
+    private static final int MAX_FEED_SIZE = 100;
+
     @Autowired
     private OrderRepository orderRepository;
 
     @Autowired
-    private OrderItemRepository orderItemRepository;
+    private CartRepository cartRepository;
 
     @Autowired
-    private CartRepository cartRepository;
+    private CartItemRepository cartItemRepository;
 
     @Autowired
-    private CartService cartService;
+    private CartStore cartStore;
 
     @Autowired
     private ProductRepository productRepository;
@@ -46,31 +50,50 @@ public class OrderService {
     @Autowired
     private PaymentService paymentService;
 
-    private final Random random = new Random();
+    @Autowired
+    private RefundService refundService;
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private OrderNumberGenerator orderNumberGenerator;
+
+    @Autowired
+    private VendorOrderStream vendorOrderStream;
 
     @Transactional
     public OrderResponse createOrderFromCart(User user, CreateOrderRequest request) {
-        // Get user's cart
-        CartResponse cartResponse = cartService.getCart(user);
-        if (cartResponse == null || cartResponse.getItems().isEmpty()) {
+        // The cart may so far only be held in memory
+        cartStore.flush(user);
+
+        // Lock the cart's products first, in one statement, so the cart fetch below sees their current stock
+        List<Long> productIds = cartItemRepository.findProductIdsByUser(user);
+        if (productIds.isEmpty()) {
+            throw new BadRequestException("Your cart is empty");
+        }
+        Map<Long, Product> products = productRepository.findAllByIdForUpdate(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        // Get user's cart with its items, products and vendor
+        Cart cart = cartRepository.findWithItemsByUser(user)
+                .orElseThrow(() -> new BadRequestException("Your cart is empty"));
+        if (cart.getItems().isEmpty()) {
             throw new BadRequestException("Your cart is empty");
         }
 
         // Validate all cart items are still available and in stock
-        validateCartItems(cartResponse);
+        validateCartItems(cart, products);
 
         // Generate unique order number
         String orderNumber = generateOrderNumber();
 
-        // Get vendor from cart
-        Vendor vendor = getVendorById(cartResponse.getVendorId());
-
         // Create order with PAYMENT_PENDING status initially
-        Order order = new Order(orderNumber, user, vendor);
-        order.setSubtotal(cartResponse.getSubtotal());
-        order.setPlatformFee(cartResponse.getPlatformFee());
-        order.setDeliveryFee(cartResponse.getDeliveryFee());
-        order.setTotalAmount(cartResponse.getTotalAmount());
+        Order order = new Order(orderNumber, user, cart.getVendor());
+        order.setSubtotal(cart.getSubtotal());
+        order.setPlatformFee(cart.getPlatformFee());
+        order.setDeliveryFee(cart.getDeliveryFee());
+        order.setTotalAmount(cart.getTotalAmount());
         order.setDeliveryAddress(request.getDeliveryAddress());
         order.setDeliveryLatitude(request.getDeliveryLatitude());
         order.setDeliveryLongitude(request.getDeliveryLongitude());
@@ -79,25 +102,24 @@ public class OrderService {
         order.setStatus(OrderStatus.PENDING);
         order.setPaymentStatus(PaymentStatus.CREATED); // Set payment status
 
-        // Save order first to get ID
-        order = orderRepository.save(order);
-
-        // Create order items from cart items
-        for (CartItemResponse cartItem : cartResponse.getItems()) {
-            Product product = productRepository.findById(cartItem.getProductId())
-                    .orElseThrow(() -> new BadRequestException("Product not found: " + cartItem.getProductId()));
-
-            OrderItem orderItem = new OrderItem(order, product, cartItem.getQuantity(), cartItem.getPriceAtTime());
-            order.addItem(orderItem);
-            orderItemRepository.save(orderItem);
+        // Create order items from cart items; the order and its items are inserted in one batch at flush
+        for (CartItem cartItem : cart.getItems()) {
+            Product product = products.get(cartItem.getProduct().getId());
+            order.addItem(new OrderItem(order, product, cartItem.getQuantity(), cartItem.getPriceAtTime()));
         }
 
+        // Sequence ids are assigned here without an insert
+        order = orderRepository.save(order);
+
         // Clear user's cart after successful order creation
-        cartService.clearCart(user);
+        cartRepository.delete(cart);
+        cartStore.evict(user);
 
-        // Update product stock (will be restored if payment fails or order is rejected)
+        // Hold product stock (released if payment fails or times out, or the order is rejected)
         updateProductStock(order);
 
+        vendorOrderStream.publish(OrderEvent.CREATED, order);
+
         logger.info("Order created successfully: {} for user: {}", order.getOrderNumber(), user.getEmail());
 
         return new OrderResponse(order);
@@ -106,18 +128,28 @@ public class OrderService {
     @Transactional(readOnly = true)
     public Page<OrderResponse> getCustomerOrders(User user, Pageable pageable) {
         Page<Order> orders = orderRepository.findByUserOrderByCreatedAtDesc(user, pageable);
-        return orders.map(OrderResponse::new);
+        return toResponses(orders);
     }
 
     @Transactional(readOnly = true)
     public Page<OrderResponse> getCustomerOrdersByStatus(User user, OrderStatus status, Pageable pageable) {
         Page<Order> orders = orderRepository.findByUserAndStatusOrderByCreatedAtDesc(user, status, pageable);
-        return orders.map(OrderResponse::new);
+        return toResponses(orders);
+    }
+
+    @Transactional(readOnly = true)
+    public OrderFeedResponse getCustomerOrderFeed(User user, OrderStatus status, String cursor, int size) {
+        OrderCursor after = OrderCursor.decode(cursor);
+        Pageable page = feedPage(size);
+        Slice<Order> orders = status != null
+                ? orderRepository.findUserFeedByStatus(user, status, after.createdAt(), after.id(), page)
+                : orderRepository.findUserFeed(user, after.createdAt(), after.id(), page);
+        return toFeed(orders);
     }
 
     @Transactional(readOnly = true)
     public OrderResponse getCustomerOrder(User user, Long orderId) {
-        Order order = orderRepository.findByIdAndUser(orderId, user)
+        Order order = orderRepository.findDetailedByIdAndUser(orderId, user)
                 .orElseThrow(() -> new BadRequestException("Order not found"));
         return new OrderResponse(order);
     }
@@ -125,18 +157,28 @@ public class OrderService {
     @Transactional(readOnly = true)
     public Page<OrderResponse> getVendorOrders(Vendor vendor, Pageable pageable) {
         Page<Order> orders = orderRepository.findByVendorOrderByCreatedAtDesc(vendor, pageable);
-        return orders.map(OrderResponse::new);
+        return toResponses(orders);
     }
 
     @Transactional(readOnly = true)
     public Page<OrderResponse> getVendorOrdersByStatus(Vendor vendor, OrderStatus status, Pageable pageable) {
         Page<Order> orders = orderRepository.findByVendorAndStatusOrderByCreatedAtDesc(vendor, status, pageable);
-        return orders.map(OrderResponse::new);
+        return toResponses(orders);
+    }
+
+    @Transactional(readOnly = true)
+    public OrderFeedResponse getVendorOrderFeed(Vendor vendor, OrderStatus status, String cursor, int size) {
+        OrderCursor after = OrderCursor.decode(cursor);
+        Pageable page = feedPage(size);
+        Slice<Order> orders = status != null
+                ? orderRepository.findVendorFeedByStatus(vendor, status, after.createdAt(), after.id(), page)
+                : orderRepository.findVendorFeed(vendor, after.createdAt(), after.id(), page);
+        return toFeed(orders);
     }
 
     @Transactional(readOnly = true)
     public OrderResponse getVendorOrder(Vendor vendor, Long orderId) {
-        Order order = orderRepository.findByIdAndVendor(orderId, vendor)
+        Order order = orderRepository.findDetailedByIdAndVendor(orderId, vendor)
                 .orElseThrow(() -> new BadRequestException("Order not found"));
         return new OrderResponse(order);
     }
@@ -159,6 +201,7 @@ public class OrderService {
         }
 
         orderRepository.save(order);
+        vendorOrderStream.publish(OrderEvent.STATUS_CHANGED, order);
         return new OrderResponse(order);
     }
 
@@ -175,24 +218,17 @@ public class OrderService {
         order.setRejectedAt(LocalDateTime.now());
         order.setRejectionReason(request.getReason());
 
-        // Process refund if payment was completed
+        // Refund if payment was completed; queued with the rejection and carried out by the refund worker
         if (order.isPaymentCompleted()) {
-            try {
-                RefundResponse refund = paymentService.processRefund(order,
-                        "Order rejected by vendor: " + (request.getReason() != null ? request.getReason() : "No reason provided"));
-
-                logger.info("Refund processed for rejected order: {} with refund ID: {}",
-                        order.getOrderNumber(), refund.getRefundId());
-            } catch (Exception e) {
-                logger.error("Error processing refund for rejected order {}: ", order.getOrderNumber(), e);
-                // Continue with rejection even if refund fails - can be processed manually
-            }
+            refundService.enqueue(order,
+                    "Order rejected by vendor: " + (request.getReason() != null ? request.getReason() : "No reason provided"));
         }
 
         // Restore product stock
         restoreProductStock(order);
 
         orderRepository.save(order);
+        vendorOrderStream.publish(OrderEvent.STATUS_CHANGED, order);
 
         logger.info("Order rejected: {} by vendor: {}", order.getOrderNumber(), vendor.getShopName());
 
@@ -219,11 +255,16 @@ public class OrderService {
             case CANCELLED:
                 order.setCancelledAt(LocalDateTime.now());
                 order.setCancellationReason(request.getReason());
+                if (order.isPaymentCompleted()) {
+                    refundService.enqueue(order,
+                            "Order cancelled by vendor: " + (request.getReason() != null ? request.getReason() : "No reason provided"));
+                }
                 restoreProductStock(order);
                 break;
         }
 
         orderRepository.save(order);
+        vendorOrderStream.publish(OrderEvent.STATUS_CHANGED, order);
         return new OrderResponse(order);
     }
 
@@ -240,24 +281,17 @@ public class OrderService {
         order.setCancelledAt(LocalDateTime.now());
         order.setCancellationReason(request.getReason());
 
-        // Process refund if payment was completed
+        // Refund if payment was completed; queued with the cancellation and carried out by the refund worker
         if (order.isPaymentCompleted()) {
-            try {
-                RefundResponse refund = paymentService.processRefund(order,
-                        "Order cancelled by customer: " + (request.getReason() != null ? request.getReason() : "No reason provided"));
-
-                logger.info("Refund processed for cancelled order: {} with refund ID: {}",
-                        order.getOrderNumber(), refund.getRefundId());
-            } catch (Exception e) {
-                logger.error("Error processing refund for cancelled order {}: ", order.getOrderNumber(), e);
-                // Continue with cancellation even if refund fails - can be processed manually
-            }
+            refundService.enqueue(order,
+                    "Order cancelled by customer: " + (request.getReason() != null ? request.getReason() : "No reason provided"));
         }
 
         // Restore product stock
         restoreProductStock(order);
 
         orderRepository.save(order);
+        vendorOrderStream.publish(OrderEvent.STATUS_CHANGED, order);
 
         logger.info("Order cancelled: {} by customer: {}", order.getOrderNumber(), user.getEmail());
 
@@ -272,14 +306,84 @@ public class OrderService {
         return paymentService.getPaymentByOrder(order);
     }
 
+    @Transactional(readOnly = true)
+    public RefundResponse getOrderRefund(User user, Long orderId) {
+        Order order = orderRepository.findByIdAndUser(orderId, user)
+                .orElseThrow(() -> new BadRequestException("Order not found"));
+
+        return refundService.getRefund(order);
+    }
+
+    /**
+     * Called by the stock reservation sweeper once an order's holds have expired.
+     * Unpaid orders are cancelled and their stock released; anything else keeps its stock.
+     */
+    @Transactional
+    public void expireUnpaidOrder(Long orderId) {
+        // Lock the order so a payment confirmation cannot land half way through
+        Order order = orderRepository.findByIdForUpdate(orderId).orElse(null);
+        if (order == null) {
+            return;
+        }
+
+        if (order.isPaymentCompleted() || order.getStatus() != OrderStatus.PENDING) {
+            // Paid (or already moved on by the vendor) but the conversion was missed
+            stockReservationService.convert(order);
+            return;
+        }
+
+        Payment payment = order.getPayment();
+        if (payment != null && payment.getStatus() == PaymentStatus.PENDING) {
+            // Authorized at the gateway, capture still to come; only the payment records this, not the order
+            stockReservationService.extend(order);
+            return;
+        }
+
+        order.setStatus(OrderStatus.CANCELLED);
+        order.setCancelledAt(LocalDateTime.now());
+        order.setCancellationReason("Payment not completed in time");
+        restoreProductStock(order);
+        orderRepository.save(order);
+        vendorOrderStream.publish(OrderEvent.STATUS_CHANGED, order);
+
+        logger.info("Order expired without payment: {}", order.getOrderNumber());
+    }
+
     public boolean isOrderReadyForVendor(Order order) {
         return order.isPaymentCompleted() && order.getStatus() == OrderStatus.PENDING;
     }
 
-    private void validateCartItems(CartResponse cart) {
-        for (CartItemResponse item : cart.getItems()) {
-            Product product = productRepository.findById(item.getProductId())
-                    .orElseThrow(() -> new BadRequestException("Product not found: " + item.getProductName()));
+    private Page<OrderResponse> toResponses(Page<Order> orders) {
+        // Page query joins user, vendor and payment; one more query fills every order's items
+        if (orders.hasContent()) {
+            orderRepository.findAllWithItemsByIdIn(orders.map(Order::getId).getContent());
+        }
+        return orders.map(OrderResponse::new);
+    }
+
+    private Pageable feedPage(int size) {
+        // Always the first "page" of what follows the cursor; Slice reads one extra row to know if there is more
+        return PageRequest.of(0, Math.max(1, Math.min(size, MAX_FEED_SIZE)));
+    }
+
+    private OrderFeedResponse toFeed(Slice<Order> orders) {
+        if (orders.hasContent()) {
+            orderRepository.findAllWithItemsByIdIn(orders.map(Order::getId).getContent());
+        }
+        List<OrderResponse> content = orders.map(OrderResponse::new).getContent();
+
+        String nextCursor = orders.hasNext() && !content.isEmpty()
+                ? OrderCursor.after(content.get(content.size() - 1)).encode()
+                : null;
+        return new OrderFeedResponse(content, content.size(), orders.hasNext(), nextCursor);
+    }
+
+    private void validateCartItems(Cart cart, Map<Long, Product> products) {
+        for (CartItem item : cart.getItems()) {
+            Product product = products.get(item.getProduct().getId());
+            if (product == null) {
+                throw new BadRequestException("Product not found: " + item.getProduct().getName());
+            }
 
             if (!product.getIsActive()) {
                 throw new BadRequestException("Product is no longer available: " + product.getName());
@@ -293,44 +397,17 @@ public class OrderService {
     }
 
     private String generateOrderNumber() {
-        String prefix = "ORD";
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmm"));
-        String randomSuffix = String.format("%03d", random.nextInt(1000));
-        String orderNumber = prefix + timestamp + randomSuffix;
-
-        // Ensure uniqueness
-        while (orderRepository.existsByOrderNumber(orderNumber)) {
-            randomSuffix = String.format("%03d", random.nextInt(1000));
-            orderNumber = prefix + timestamp + randomSuffix;
-        }
-
-        return orderNumber;
-    }
-
-    private Vendor getVendorById(Long vendorId) {
-        return vendorRepository.findById(vendorId)
-                .orElseThrow(() -> new BadRequestException("Vendor not found"));
+        // Unique per node by construction; the order_number unique constraint remains the backstop
+        return orderNumberGenerator.next();
     }
 
     private void updateProductStock(Order order) {
-        for (OrderItem item : order.getItems()) {
-            Product product = item.getProduct();
-            int newStock = product.getStock() - item.getQuantity();
-            if (newStock < 0) {
-                throw new BadRequestException("Insufficient stock for " + product.getName());
-            }
-            product.setStock(newStock);
-            productRepository.save(product);
-        }
+        // Held until payment succeeds; released by the sweeper if the order stays unpaid
+        stockReservationService.hold(order);
     }
 
     private void restoreProductStock(Order order) {
-        for (OrderItem item : order.getItems()) {
-            Product product = item.getProduct();
-            int newStock = product.getStock() + item.getQuantity();
-            product.setStock(newStock);
-            productRepository.save(product);
-        }
+        stockReservationService.release(order);
     }
 
     private void validateStatusTransition(OrderStatus currentStatus, OrderStatus newStatus) {
@@ -367,7 +444,4 @@ public class OrderService {
                 throw new BadRequestException("Cannot change status from " + currentStatus);
         }
     }
-
-    @Autowired
-    private VendorRepository vendorRepository;
 }
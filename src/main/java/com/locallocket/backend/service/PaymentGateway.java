@@ -0,0 +1,396 @@
+package com.locallocket.backend.service;
+
+import com.locallocket.backend.exception.GatewayTimeoutException;
+import com.locallocket.backend.exception.GatewayUnavailableException;
+import com.razorpay.Order;
+import com.razorpay.Payment;
+import com.razorpay.RazorpayClient;
+import com.razorpay.RazorpayException;
+import com.razorpay.Refund;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The only place that talks to Razorpay over the network.
+ * <p>
+ * Calls are refused inside a database transaction: a slow gateway would otherwise keep a pooled
+ * connection checked out for the whole round trip. Callers read what they need in one short
+ * transaction, call the gateway, then record the outcome in another.
+ * <p>
+ * Every call is bounded so a gateway brownout cannot soak up the application's threads:
+ * <ul>
+ *   <li>a per-operation timeout, after which the call is abandoned and {@link GatewayTimeoutException} thrown;</li>
+ *   <li>a bulkhead capping the calls in flight, abandoned ones included until they actually end;</li>
+ *   <li>a circuit breaker that stops calling for a while once too many recent calls failed.</li>
+ * </ul>
+ * A call turned away by the bulkhead or the breaker never reaches the gateway and fails with
+ * {@link GatewayUnavailableException}.
+ */
+@Component
+public class PaymentGateway {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentGateway.class);
+
+    @Autowired
+    private RazorpayClient razorpayClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${payment.gateway.timeout.create-order-ms:5000}")
+    private long createOrderTimeoutMs;
+
+    @Value("${payment.gateway.timeout.fetch-ms:3000}")
+    private long fetchTimeoutMs;
+
+    @Value("${payment.gateway.timeout.refund-ms:10000}")
+    private long refundTimeoutMs;
+
+    @Value("${payment.gateway.bulkhead.max-concurrent-calls:20}")
+    private int maxConcurrentCalls;
+
+    @Value("${payment.gateway.bulkhead.max-wait-ms:100}")
+    private long maxWaitMs;
+
+    @Value("${payment.gateway.circuit-breaker.window-size:20}")
+    private int windowSize;
+
+    @Value("${payment.gateway.circuit-breaker.minimum-calls:10}")
+    private int minimumCalls;
+
+    @Value("${payment.gateway.circuit-breaker.failure-rate-threshold:50}")
+    private int failureRateThreshold;
+
+    @Value("${payment.gateway.circuit-breaker.open-ms:30000}")
+    private long openMs;
+
+    @Value("${payment.gateway.circuit-breaker.half-open-calls:3}")
+    private int halfOpenCalls;
+
+    // The SDK's HTTP client is a hidden static with fixed timeouts, so calls are run here and waited on
+    private final ExecutorService calls = Executors.newVirtualThreadPerTaskExecutor();
+
+    private Semaphore bulkhead;
+    private CircuitBreaker circuitBreaker;
+
+    @PostConstruct
+    void init() {
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.circuitBreaker = new CircuitBreaker(windowSize, minimumCalls, failureRateThreshold,
+                TimeUnit.MILLISECONDS.toNanos(openMs), halfOpenCalls);
+
+        Gauge.builder("payment.gateway.circuit.state", circuitBreaker, breaker -> breaker.state().ordinal())
+                .description("0 closed, 1 half-open, 2 open")
+                .register(meterRegistry);
+        Gauge.builder("payment.gateway.bulkhead.in-flight", bulkhead, permits -> maxConcurrentCalls - permits.availablePermits())
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        calls.shutdownNow();
+    }
+
+    public Order createOrder(JSONObject request) throws RazorpayException {
+        return call("create_order", createOrderTimeoutMs, () -> razorpayClient.orders.create(request));
+    }
+
+    public Payment fetchPayment(String razorpayPaymentId) throws RazorpayException {
+        return call("fetch_payment", fetchTimeoutMs, () -> razorpayClient.payments.fetch(razorpayPaymentId));
+    }
+
+    public List<Payment> fetchOrderPayments(String razorpayOrderId) throws RazorpayException {
+        return call("fetch_order_payments", fetchTimeoutMs, () -> razorpayClient.orders.fetchPayments(razorpayOrderId));
+    }
+
+    public Refund refund(String razorpayPaymentId, JSONObject request) throws RazorpayException {
+        return call("refund", refundTimeoutMs, () -> razorpayClient.payments.refund(razorpayPaymentId, request));
+    }
+
+    public Refund fetchRefund(String razorpayPaymentId, String refundId) throws RazorpayException {
+        return call("fetch_refund", fetchTimeoutMs, () -> razorpayClient.payments.fetchRefund(razorpayPaymentId, refundId));
+    }
+
+    public List<Refund> fetchRefunds(String razorpayPaymentId) throws RazorpayException {
+        return call("fetch_refunds", fetchTimeoutMs, () -> razorpayClient.payments.fetchAllRefunds(razorpayPaymentId));
+    }
+
+    /**
+     * Whether a call made now would be let through by the circuit breaker
+     */
+    public boolean isAvailable() {
+        return circuitBreaker.retryAfterNanos() == 0;
+    }
+
+    /**
+     * Fail fast, before any other work, while the circuit breaker is open
+     */
+    public void requireAvailable() {
+        long retryAfterNanos = circuitBreaker.retryAfterNanos();
+        if (retryAfterNanos > 0) {
+            throw new GatewayUnavailableException("Payment gateway is unavailable, please try again shortly",
+                    retryAfterSeconds(retryAfterNanos));
+        }
+    }
+
+    private <T> T call(String operation, long timeoutMs, GatewayCall<T> call) throws RazorpayException {
+        requireNoTransaction();
+
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RazorpayException("Interrupted waiting for the payment gateway");
+        }
+        if (!acquired) {
+            rejected(operation, "bulkhead_full");
+            throw new GatewayUnavailableException("Payment gateway is busy, please try again shortly", 1);
+        }
+
+        // Whoever sets this first releases the permit: the call when it ends, or the caller if it never started
+        AtomicBoolean started = new AtomicBoolean();
+        boolean handedOff = false;
+        try {
+            if (!circuitBreaker.tryAcquire()) {
+                rejected(operation, "circuit_open");
+                throw new GatewayUnavailableException("Payment gateway is unavailable, please try again shortly",
+                        retryAfterSeconds(circuitBreaker.retryAfterNanos()));
+            }
+
+            long start = System.nanoTime();
+            Future<T> future = calls.submit(() -> {
+                if (!started.compareAndSet(false, true)) {
+                    return null;
+                }
+                try {
+                    return call.call();
+                } finally {
+                    bulkhead.release();
+                }
+            });
+            handedOff = true;
+
+            try {
+                T result = future.get(timeoutMs, TimeUnit.MILLISECONDS);
+                circuitBreaker.onSuccess();
+                completed(operation, "success", start);
+                return result;
+            } catch (TimeoutException e) {
+                abandon(future, started);
+                circuitBreaker.onFailure();
+                completed(operation, "timeout", start);
+                logger.warn("Payment gateway {} timed out after {} ms", operation, timeoutMs);
+                throw new GatewayTimeoutException(operation + " timed out after " + timeoutMs + " ms");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RazorpayException gatewayError && isRequestError(gatewayError)) {
+                    // The gateway is up and answered; the request itself was at fault
+                    circuitBreaker.onSuccess();
+                } else {
+                    circuitBreaker.onFailure();
+                }
+                completed(operation, "error", start);
+                if (cause instanceof RazorpayException gatewayError) {
+                    throw gatewayError;
+                }
+                if (cause instanceof RuntimeException runtimeError) {
+                    throw runtimeError;
+                }
+                throw new RazorpayException(String.valueOf(cause.getMessage()));
+            } catch (InterruptedException e) {
+                abandon(future, started);
+                circuitBreaker.onCancelled();
+                Thread.currentThread().interrupt();
+                throw new RazorpayException("Interrupted waiting for the payment gateway");
+            }
+        } finally {
+            if (!handedOff) {
+                bulkhead.release();
+            }
+        }
+    }
+
+    private void abandon(Future<?> future, AtomicBoolean started) {
+        // Interrupting the virtual thread closes its socket, which ends the stuck call
+        future.cancel(true);
+        if (started.compareAndSet(false, true)) {
+            bulkhead.release();
+        }
+    }
+
+    private boolean isRequestError(RazorpayException e) {
+        // The SDK prefixes API errors with their code; only BAD_REQUEST_ERROR is the caller's fault
+        return e.getMessage() != null && e.getMessage().startsWith("BAD_REQUEST_ERROR");
+    }
+
+    private void completed(String operation, String outcome, long startNanos) {
+        meterRegistry.timer("payment.gateway.calls", "operation", operation, "outcome", outcome)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void rejected(String operation, String reason) {
+        meterRegistry.counter("payment.gateway.rejected", "operation", operation, "reason", reason).increment();
+    }
+
+    private long retryAfterSeconds(long retryAfterNanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    private void requireNoTransaction() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Payment gateway must not be called inside a database transaction");
+        }
+    }
+
+    @FunctionalInterface
+    private interface GatewayCall<T> {
+        T call() throws RazorpayException;
+    }
+
+    /**
+     * Count-based circuit breaker. Opens when the failure rate over the last {@code windowSize}
+     * calls reaches the threshold, turns calls away while open, then lets a few trial calls through:
+     * all of them succeeding closes it again, any of them failing opens it again.
+     */
+    static final class CircuitBreaker {
+
+        enum State { CLOSED, HALF_OPEN, OPEN }
+
+        private final boolean[] window;
+        private final int minimumCalls;
+        private final int failureRateThreshold;
+        private final long openNanos;
+        private final int halfOpenCalls;
+
+        private State state = State.CLOSED;
+        private int next;
+        private int recorded;
+        private int failures;
+        private long openedAt;
+        private int trialsStarted;
+        private int trialsSucceeded;
+
+        CircuitBreaker(int windowSize, int minimumCalls, int failureRateThreshold, long openNanos, int halfOpenCalls) {
+            this.window = new boolean[windowSize];
+            this.minimumCalls = Math.min(minimumCalls, windowSize);
+            this.failureRateThreshold = failureRateThreshold;
+            this.openNanos = openNanos;
+            this.halfOpenCalls = halfOpenCalls;
+        }
+
+        synchronized State state() {
+            return state;
+        }
+
+        synchronized boolean tryAcquire() {
+            if (state == State.OPEN) {
+                if (System.nanoTime() - openedAt < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialsStarted = 0;
+                trialsSucceeded = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (trialsStarted >= halfOpenCalls) {
+                    return false;
+                }
+                trialsStarted++;
+            }
+            return true;
+        }
+
+        /**
+         * Time left until calls are let through again; 0 if they are now
+         */
+        synchronized long retryAfterNanos() {
+            if (state != State.OPEN) {
+                return 0;
+            }
+            return Math.max(0, openNanos - (System.nanoTime() - openedAt));
+        }
+
+        synchronized void onSuccess() {
+            if (state == State.HALF_OPEN) {
+                if (++trialsSucceeded >= halfOpenCalls) {
+                    close();
+                }
+            } else if (state == State.CLOSED) {
+                record(false);
+            }
+        }
+
+        synchronized void onFailure() {
+            if (state == State.HALF_OPEN) {
+                open();
+            } else if (state == State.CLOSED) {
+                record(true);
+                if (recorded >= minimumCalls && failures * 100 >= failureRateThreshold * recorded) {
+                    open();
+                }
+            }
+        }
+
+        /**
+         * A call let through that ended without an outcome, so its trial slot can be reused
+         */
+        synchronized void onCancelled() {
+            if (state == State.HALF_OPEN && trialsStarted > trialsSucceeded) {
+                trialsStarted--;
+            }
+        }
+
+        private void record(boolean failure) {
+            if (recorded == window.length) {
+                if (window[next]) {
+                    failures--;
+                }
+            } else {
+                recorded++;
+            }
+            window[next] = failure;
+            if (failure) {
+                failures++;
+            }
+            next = (next + 1) % window.length;
+        }
+
+        private void open() {
+            if (state != State.OPEN) {
+                logger.warn("Payment gateway circuit opened");
+            }
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+
+        private void close() {
+            state = State.CLOSED;
+            next = 0;
+            recorded = 0;
+            failures = 0;
+            Arrays.fill(window, false);
+            logger.info("Payment gateway circuit closed");
+        }
+    }
+}
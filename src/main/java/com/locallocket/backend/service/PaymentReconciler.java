@@ -0,0 +1,247 @@
+package com.locallocket.backend.service;
+
+import com.locallocket.backend.entity.PaymentStatus;
+import com.locallocket.backend.exception.GatewayUnavailableException;
+import com.locallocket.backend.repository.PaymentRepository;
+import com.locallocket.backend.repository.PaymentRepository.StalePayment;
+import com.razorpay.Payment;
+import com.razorpay.RazorpayException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Periodically checks payments still CREATED or PENDING a while after checkout against the
+ * gateway, catching confirmations that were lost on the way (closed browser, missed webhook).
+ * <p>
+ * Stale payments are read in chunks. Each chunk is looked up at the gateway with a bounded number
+ * of calls in flight and a cap on calls per second, and the outcome is written in one transaction.
+ * Payments whose status changes are counted as drift, tagged with the old and new status.
+ */
+@Component
+public class PaymentReconciler {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentReconciler.class);
+
+    private static final List<PaymentStatus> STALE_STATUSES = List.of(PaymentStatus.CREATED, PaymentStatus.PENDING);
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentGateway paymentGateway;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${payment.reconciliation.stale-after-minutes:30}")
+    private long staleAfterMinutes;
+
+    @Value("${payment.reconciliation.chunk-size:100}")
+    private int chunkSize;
+
+    @Value("${payment.reconciliation.concurrency:4}")
+    private int concurrency;
+
+    @Value("${payment.reconciliation.max-calls-per-second:10}")
+    private double maxCallsPerSecond;
+
+    private TransactionTemplate transaction;
+    private ExecutorService lookups;
+    private RateLimiter rateLimiter;
+
+    private Counter checked;
+    private Counter errors;
+    private Timer duration;
+
+    @PostConstruct
+    void init() {
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.lookups = Executors.newFixedThreadPool(concurrency, Thread.ofPlatform().name("payment-reconciler-", 1).factory());
+        this.rateLimiter = new RateLimiter(maxCallsPerSecond);
+
+        this.checked = meterRegistry.counter("payment.reconciliation.checked");
+        this.errors = meterRegistry.counter("payment.reconciliation.errors");
+        this.duration = meterRegistry.timer("payment.reconciliation.duration");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        lookups.shutdownNow();
+    }
+
+    @Scheduled(fixedDelayString = "${payment.reconciliation.interval-ms:600000}",
+            initialDelayString = "${payment.reconciliation.interval-ms:600000}")
+    public void reconcile() {
+        duration.record(this::run);
+    }
+
+    private void run() {
+        LocalDateTime staleBefore = LocalDateTime.now().minusMinutes(staleAfterMinutes);
+        int total = 0;
+        int drifted = 0;
+        long afterId = 0;
+        List<StalePayment> chunk;
+        do {
+            if (!paymentGateway.isAvailable()) {
+                logger.warn("Payment gateway unavailable, stopping reconciliation until the next run");
+                break;
+            }
+            chunk = paymentRepository.findStale(STALE_STATUSES, staleBefore, afterId, PageRequest.of(0, chunkSize));
+            if (chunk.isEmpty()) {
+                break;
+            }
+            afterId = chunk.get(chunk.size() - 1).getId();
+
+            List<GatewayView> views = lookUp(chunk);
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            drifted += record(views);
+            total += chunk.size();
+        } while (chunk.size() == chunkSize);
+
+        if (total > 0) {
+            logger.info("Reconciled {} stale payments, {} changed", total, drifted);
+        }
+    }
+
+    private List<GatewayView> lookUp(List<StalePayment> chunk) {
+        List<Future<List<JSONObject>>> running = new ArrayList<>(chunk.size());
+        for (StalePayment payment : chunk) {
+            running.add(lookups.submit(() -> {
+                rateLimiter.acquire();
+                List<JSONObject> gatewayPayments = new ArrayList<>();
+                for (Payment gatewayPayment : paymentGateway.fetchOrderPayments(payment.getRazorpayOrderId())) {
+                    gatewayPayments.add(gatewayPayment.toJson());
+                }
+                return gatewayPayments;
+            }));
+        }
+
+        List<GatewayView> views = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            try {
+                views.add(new GatewayView(chunk.get(i), running.get(i).get()));
+                checked.increment();
+            } catch (ExecutionException e) {
+                // Left as is and looked at again on the next run
+                errors.increment();
+                Throwable cause = e.getCause();
+                if (cause instanceof RazorpayException || cause instanceof GatewayUnavailableException) {
+                    logger.warn("Gateway lookup for Razorpay order {} failed: {}",
+                            chunk.get(i).getRazorpayOrderId(), cause.getMessage());
+                } else {
+                    logger.error("Gateway lookup for Razorpay order {} failed: ", chunk.get(i).getRazorpayOrderId(), cause);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running.forEach(future -> future.cancel(true));
+                break;
+            }
+        }
+        return views;
+    }
+
+    private int record(List<GatewayView> views) {
+        List<Drift> drifts;
+        try {
+            drifts = transaction.execute(status -> {
+                List<Drift> changed = new ArrayList<>();
+                for (GatewayView view : views) {
+                    apply(view, changed);
+                }
+                return changed;
+            });
+        } catch (RuntimeException e) {
+            // One bad payment should not hold back the rest of the chunk
+            logger.warn("Batched reconciliation write failed, retrying payments one by one: {}", e.getMessage());
+            drifts = new ArrayList<>();
+            for (GatewayView view : views) {
+                List<Drift> changed = new ArrayList<>();
+                try {
+                    transaction.executeWithoutResult(status -> apply(view, changed));
+                    drifts.addAll(changed);
+                } catch (RuntimeException single) {
+                    errors.increment();
+                    logger.error("Error reconciling payment {}: ", view.payment().getId(), single);
+                }
+            }
+        }
+
+        // Counted once committed
+        for (Drift drift : drifts) {
+            meterRegistry.counter("payment.reconciliation.drift", "from", drift.from().name(), "to", drift.to().name())
+                    .increment();
+            logger.info("Payment {} reconciled from {} to {}", drift.paymentId(), drift.from(), drift.to());
+        }
+        return drifts.size();
+    }
+
+    private void apply(GatewayView view, List<Drift> changed) {
+        StalePayment payment = view.payment();
+        PaymentStatus result = paymentService.reconcile(
+                payment.getOrderId(), payment.getId(), payment.getStatus(), view.gatewayPayments());
+        if (result != null && result != payment.getStatus()) {
+            changed.add(new Drift(payment.getId(), payment.getStatus(), result));
+        }
+    }
+
+    private record GatewayView(StalePayment payment, List<JSONObject> gatewayPayments) {}
+
+    private record Drift(Long paymentId, PaymentStatus from, PaymentStatus to) {}
+
+    /**
+     * Spaces calls evenly at no more than the given rate; callers wait for their slot
+     */
+    private static final class RateLimiter {
+
+        private final long intervalNanos;
+        private final AtomicLong nextSlot = new AtomicLong(System.nanoTime());
+
+        RateLimiter(double permitsPerSecond) {
+            this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        }
+
+        void acquire() throws InterruptedException {
+            long now = System.nanoTime();
+            long slot = nextSlot.getAndAccumulate(now, (next, current) -> Math.max(next, current) + intervalNanos);
+            long wait = Math.max(slot, now) - now;
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        }
+    }
+}
@@ -1,30 +1,31 @@
 package com.locallocket.backend.service;
 
+import com.locallocket.backend.dto.order.OrderEvent;
 import com.locallocket.backend.dto.payment.*;
 import com.locallocket.backend.entity.*;
 import com.locallocket.backend.exception.BadRequestException;
+import com.locallocket.backend.exception.GatewayTimeoutException;
+import com.locallocket.backend.exception.GatewayUnavailableException;
 import com.locallocket.backend.exception.PaymentException;
 import com.locallocket.backend.repository.*;
+import com.locallocket.backend.security.RazorpaySignatureVerifier;
 import com.razorpay.Order;
 import com.razorpay.Payment;
-import com.razorpay.RazorpayClient;
 import com.razorpay.RazorpayException;
-import com.razorpay.Utils;
+import jakarta.annotation.PostConstruct;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 import java.math.BigDecimal;
-import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
-import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Service
@@ -39,230 +40,275 @@ public class PaymentService {
     private OrderRepository orderRepository;
 
     @Autowired
-    private RazorpayClient razorpayClient;
+    private PaymentGateway paymentGateway;
 
-    @Value("${razorpay.key-id}")
-    private String razorpayKeyId;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
 
-    @Value("${razorpay.webhook-secret}")
-    private String webhookSecret;
+    @Autowired
+    private StockReservationService stockReservationService;
 
-    @Transactional
-    public PaymentOrderResponse createPaymentOrder(User user, CreatePaymentRequest request) {
-        // Get order
-        com.locallocket.backend.entity.Order order = orderRepository.findByIdAndUser(request.getOrderId(), user)
-                .orElseThrow(() -> new BadRequestException("Order not found"));
+    @Autowired
+    private VendorOrderStream vendorOrderStream;
 
-        // Check if order already has payment
-        if (order.getPayment() != null) {
-            throw new BadRequestException("Payment already exists for this order");
-        }
+    @Autowired
+    private RefundService refundService;
 
-        // Check if order is in valid state for payment
-        if (order.getStatus() != OrderStatus.PENDING) {
-            throw new BadRequestException("Order is not in valid state for payment. Current status: " + order.getStatus());
-        }
+    @Autowired
+    private RazorpaySignatureVerifier signatureVerifier;
 
-        try {
-            // Create Razorpay order
-            JSONObject razorpayOrderRequest = new JSONObject();
-            razorpayOrderRequest.put("amount", order.getTotalAmount().multiply(new BigDecimal("100")).intValue()); // Convert to paise
-            razorpayOrderRequest.put("currency", "INR");
-            razorpayOrderRequest.put("receipt", order.getOrderNumber());
-
-            // Add order notes
-            JSONObject notes = new JSONObject();
-            notes.put("order_id", order.getId());
-            notes.put("customer_id", user.getId());
-            notes.put("vendor_id", order.getVendor().getId());
-            razorpayOrderRequest.put("notes", notes);
-
-            Order razorpayOrder = razorpayClient.orders.create(razorpayOrderRequest);
-
-            // Create payment record
-            com.locallocket.backend.entity.Payment payment = new com.locallocket.backend.entity.Payment(
-                    order, razorpayOrder.get("id"), order.getTotalAmount());
-            payment = paymentRepository.save(payment);
+    @Value("${razorpay.key-id}")
+    private String razorpayKeyId;
 
-            // Link payment to order
-            order.setPayment(payment);
-            order.setPaymentStatus(PaymentStatus.CREATED);
-            orderRepository.save(order);
+    // Short transactions around gateway calls; see PaymentGateway
+    private TransactionTemplate transaction;
+    private TransactionTemplate readOnlyTransaction;
 
-            // Create response
-            return new PaymentOrderResponse(
-                    payment.getId(),
-                    razorpayOrder.get("id"),
-                    razorpayKeyId,
-                    order.getTotalAmount(),
-                    "INR",
-                    user.getFullName(),
-                    user.getEmail(),
-                    order.getCustomerPhone(),
-                    "Payment for Order " + order.getOrderNumber()
-            );
+    @PostConstruct
+    void init() {
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
 
+    /**
+     * Create the Razorpay order for a pending order and record it as the order's payment.
+     * The gateway call sits between two short transactions and never inside one.
+     */
+    public PaymentOrderResponse createPaymentOrder(User user, CreatePaymentRequest request) {
+        // Check the order can take a payment
+        com.locallocket.backend.entity.Order order = readOnlyTransaction.execute(status -> {
+            com.locallocket.backend.entity.Order found = orderRepository.findByIdAndUser(request.getOrderId(), user)
+                    .orElseThrow(() -> new BadRequestException("Order not found"));
+            checkPayable(found);
+            return found;
+        });
+
+        // Create Razorpay order
+        JSONObject razorpayOrderRequest = new JSONObject();
+        razorpayOrderRequest.put("amount", order.getTotalAmount().multiply(new BigDecimal("100")).intValue()); // Convert to paise
+        razorpayOrderRequest.put("currency", "INR");
+        razorpayOrderRequest.put("receipt", order.getOrderNumber());
+
+        // Add order notes
+        JSONObject notes = new JSONObject();
+        notes.put("order_id", order.getId());
+        notes.put("customer_id", user.getId());
+        notes.put("vendor_id", order.getVendor().getId());
+        razorpayOrderRequest.put("notes", notes);
+
+        String razorpayOrderId;
+        try {
+            Order razorpayOrder = paymentGateway.createOrder(razorpayOrderRequest);
+            razorpayOrderId = razorpayOrder.get("id");
+        } catch (GatewayTimeoutException e) {
+            // Nothing recorded yet; a retry creates a fresh Razorpay order and the timed out one expires unpaid
+            throw new GatewayUnavailableException("Payment gateway did not respond, please try again", 1);
         } catch (RazorpayException e) {
             logger.error("Error creating Razorpay order: ", e);
             throw new PaymentException("Failed to create payment order: " + e.getMessage());
         }
+
+        // Record the payment; checked again under the order lock since the order may have moved on meanwhile.
+        // If another request won, its Razorpay order is the one used and this one expires unpaid at the gateway.
+        com.locallocket.backend.entity.Payment payment = transaction.execute(status -> {
+            com.locallocket.backend.entity.Order locked = orderRepository.findByIdForUpdate(order.getId())
+                    .orElseThrow(() -> new BadRequestException("Order not found"));
+            checkPayable(locked);
+
+            com.locallocket.backend.entity.Payment created = paymentRepository.save(
+                    new com.locallocket.backend.entity.Payment(locked, razorpayOrderId, locked.getTotalAmount()));
+
+            // Link payment to order
+            locked.setPayment(created);
+            locked.setPaymentStatus(PaymentStatus.CREATED);
+            orderRepository.save(locked);
+            return created;
+        });
+
+        // Create response
+        return new PaymentOrderResponse(
+                payment.getId(),
+                razorpayOrderId,
+                razorpayKeyId,
+                order.getTotalAmount(),
+                "INR",
+                user.getFullName(),
+                user.getEmail(),
+                order.getCustomerPhone(),
+                "Payment for Order " + order.getOrderNumber()
+        );
     }
 
-    @Transactional
+    /**
+     * Confirm a checkout with the gateway. Safe to retry: a payment already verified with the
+     * same Razorpay payment id is returned as is.
+     */
     public PaymentResponse verifyPayment(VerifyPaymentRequest request) {
         // Get payment
-        com.locallocket.backend.entity.Payment payment = paymentRepository.findById(request.getPaymentId())
-                .orElseThrow(() -> new BadRequestException("Payment not found"));
+        com.locallocket.backend.entity.Payment payment = readOnlyTransaction.execute(status ->
+                paymentRepository.findById(request.getPaymentId())
+                        .orElseThrow(() -> new BadRequestException("Payment not found")));
+
+        if (payment.isSuccessful() && request.getRazorpayPaymentId().equals(payment.getRazorpayPaymentId())) {
+            return readOnlyTransaction.execute(status ->
+                    new PaymentResponse(paymentRepository.findById(payment.getId()).orElseThrow()));
+        }
 
         // Verify signature
-        boolean signatureValid = verifyRazorpaySignature(
+        boolean signatureValid = signatureVerifier.verifyPayment(
                 payment.getRazorpayOrderId(),
                 request.getRazorpayPaymentId(),
                 request.getRazorpaySignature()
         );
 
         if (!signatureValid) {
-            payment.setStatus(PaymentStatus.FAILED);
-            payment.setFailureReason("Invalid payment signature");
-            paymentRepository.save(payment);
+            markFailed(payment.getId(), "Invalid payment signature");
             throw new BadRequestException("Invalid payment signature");
         }
 
+        // Fetch payment details from Razorpay
+        Payment razorpayPayment;
         try {
-            // Fetch payment details from Razorpay
-            Payment razorpayPayment = razorpayClient.payments.fetch(request.getRazorpayPaymentId());
+            razorpayPayment = paymentGateway.fetchPayment(request.getRazorpayPaymentId());
+        } catch (GatewayTimeoutException e) {
+            // The payment may well have gone through; leave it open for a retry or the reconciler
+            throw new GatewayUnavailableException("Payment gateway did not respond, please try again", 1);
+        } catch (RazorpayException e) {
+            logger.error("Error verifying payment: ", e);
+            markFailed(payment.getId(), "Payment verification failed: " + e.getMessage());
+            throw new PaymentException("Payment verification failed: " + e.getMessage());
+        }
+
+        // A valid signature only says the checkout happened; the gateway says whether the money did
+        String gatewayStatus = razorpayPayment.toJson().optString("status");
+        if ("failed".equals(gatewayStatus)) {
+            markFailed(payment.getId(), "Payment failed at the gateway");
+            throw new PaymentException("Payment failed");
+        }
+        if (!"captured".equals(gatewayStatus) && !"authorized".equals(gatewayStatus)) {
+            throw new PaymentException("Payment is not complete at the gateway: " + gatewayStatus);
+        }
+
+        return transaction.execute(status -> {
+            // Same lock as the reservation sweeper, so an expiring order and its payment cannot cross
+            com.locallocket.backend.entity.Order order = orderRepository.findByIdForUpdate(payment.getOrder().getId())
+                    .orElseThrow(() -> new BadRequestException("Order not found"));
+            com.locallocket.backend.entity.Payment current = paymentRepository.findById(payment.getId())
+                    .orElseThrow(() -> new BadRequestException("Payment not found"));
+            if (isSettled(current)) {
+                // Captured by a webhook meanwhile, or since refunded; a replayed verify changes nothing
+                return new PaymentResponse(current);
+            }
 
             // Update payment record
-            payment.setRazorpayPaymentId(request.getRazorpayPaymentId());
-            payment.setRazorpaySignature(request.getRazorpaySignature());
-            payment.setStatus(PaymentStatus.SUCCESS);
+            current.setRazorpayPaymentId(request.getRazorpayPaymentId());
+            current.setRazorpaySignature(request.getRazorpaySignature());
+            current.setStatus(PaymentStatus.SUCCESS);
+            current.setFailureReason(null);
 
             // Extract payment method details
-            updatePaymentMethodDetails(payment, razorpayPayment);
+            updatePaymentMethodDetails(current, razorpayPayment);
 
-            payment = paymentRepository.save(payment);
+            current = paymentRepository.save(current);
 
             // Update order status
-            com.locallocket.backend.entity.Order order = payment.getOrder();
             order.setPaymentStatus(PaymentStatus.SUCCESS);
             orderRepository.save(order);
+            convertStockHolds(order);
+            vendorOrderStream.publish(OrderEvent.PAID, order);
 
             logger.info("Payment verified successfully for order: {}", order.getOrderNumber());
 
-            return new PaymentResponse(payment);
-
-        } catch (RazorpayException e) {
-            logger.error("Error verifying payment: ", e);
-            payment.setStatus(PaymentStatus.FAILED);
-            payment.setFailureReason("Payment verification failed: " + e.getMessage());
-            paymentRepository.save(payment);
-            throw new PaymentException("Payment verification failed: " + e.getMessage());
-        }
+            return new PaymentResponse(current);
+        });
     }
 
-    @Transactional
-    public void handlePaymentWebhook(String payload, String signature) {
-        // Verify webhook signature
-        if (!verifyWebhookSignature(payload, signature)) {
-            logger.warn("Invalid webhook signature received");
+    /**
+     * Apply one stored webhook event; called by the webhook processor inside its transaction.
+     * Deliveries may repeat or arrive out of order, so a settled payment is never moved back.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void applyWebhookEvent(String event, JSONObject webhookPayload) {
+        JSONObject entities = webhookPayload.getJSONObject("payload");
+
+        if (event.startsWith("refund.")) {
+            refundService.applyGatewayRefund(entities.getJSONObject("refund").getJSONObject("entity"));
             return;
         }
-
-        try {
-            JSONObject webhookPayload = new JSONObject(payload);
-            String event = webhookPayload.getString("event");
-            JSONObject paymentEntity = webhookPayload.getJSONObject("payload")
-                    .getJSONObject("payment")
-                    .getJSONObject("entity");
-
-            String razorpayPaymentId = paymentEntity.getString("id");
-            String razorpayOrderId = paymentEntity.getString("order_id");
-
-            // Find payment by Razorpay order ID
-            Optional<com.locallocket.backend.entity.Payment> paymentOpt =
-                    paymentRepository.findByRazorpayOrderId(razorpayOrderId);
-
-            if (paymentOpt.isEmpty()) {
-                logger.warn("Payment not found for Razorpay order ID: {}", razorpayOrderId);
-                return;
-            }
-
-            com.locallocket.backend.entity.Payment payment = paymentOpt.get();
-            payment.setWebhookVerified(true);
-
-            switch (event) {
-                case "payment.captured":
-                    handlePaymentCaptured(payment, paymentEntity);
-                    break;
-                case "payment.failed":
-                    handlePaymentFailed(payment, paymentEntity);
-                    break;
-                case "payment.authorized":
-                    handlePaymentAuthorized(payment, paymentEntity);
-                    break;
-                default:
-                    logger.info("Unhandled webhook event: {}", event);
-            }
-
-            paymentRepository.save(payment);
-
-        } catch (Exception e) {
-            logger.error("Error processing payment webhook: ", e);
+        if (!entities.has("payment")) {
+            logger.info("Unhandled webhook event: {}", event);
+            return;
         }
-    }
 
-    @Transactional
-    public RefundResponse processRefund(com.locallocket.backend.entity.Order order, String reason) {
-        com.locallocket.backend.entity.Payment payment = order.getPayment();
+        JSONObject paymentEntity = entities.getJSONObject("payment").getJSONObject("entity");
+        String razorpayOrderId = paymentEntity.getString("order_id");
 
-        if (payment == null || !payment.isSuccessful()) {
-            throw new BadRequestException("No successful payment found for this order");
+        // Same lock as payment verification and the reservation sweeper
+        Optional<Long> orderId = paymentRepository.findOrderIdByRazorpayOrderId(razorpayOrderId);
+        if (orderId.isEmpty()) {
+            logger.warn("Payment not found for Razorpay order ID: {}", razorpayOrderId);
+            return;
         }
-
-        if (payment.isRefunded()) {
-            throw new BadRequestException("Payment has already been refunded");
+        orderRepository.findByIdForUpdate(orderId.get());
+        com.locallocket.backend.entity.Payment payment = paymentRepository.findByRazorpayOrderId(razorpayOrderId)
+                .orElseThrow();
+        payment.setWebhookVerified(true);
+
+        switch (event) {
+            case "payment.captured":
+                handlePaymentCaptured(payment, paymentEntity);
+                break;
+            case "payment.failed":
+                handlePaymentFailed(payment, paymentEntity);
+                break;
+            case "payment.authorized":
+                handlePaymentAuthorized(payment, paymentEntity);
+                break;
+            default:
+                logger.info("Unhandled webhook event: {}", event);
         }
 
-        try {
-            // Create refund request JSON
-            JSONObject refundRequest = new JSONObject();
-            refundRequest.put("amount", payment.getAmount().multiply(new BigDecimal("100")).intValue()); // Convert to paise
-            refundRequest.put("speed", "normal"); // normal or optimum
-
-            // Add notes
-            JSONObject notes = new JSONObject();
-            notes.put("order_id", order.getId());
-            notes.put("refund_reason", reason);
-            refundRequest.put("notes", notes);
-
-            // Create refund using RazorpayClient (NOT Payment.createRefund)
-            com.razorpay.Refund refund = razorpayClient.payments.refund(payment.getRazorpayPaymentId(), refundRequest);
+        paymentRepository.save(payment);
+    }
 
-            // Update payment record
-            payment.setRefundId(refund.get("id"));
-            payment.setRefundAmount(payment.getAmount());
-            payment.setRefundedAt(LocalDateTime.now());
-            payment.setStatus(PaymentStatus.REFUNDED);
-            paymentRepository.save(payment);
+    /**
+     * Bring a payment the gateway never confirmed to us in line with the gateway's record of its
+     * Razorpay order; called by the reconciliation job inside its transaction.
+     *
+     * @return the payment's status afterwards, or null if it changed since the job read it
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public PaymentStatus reconcile(Long orderId, Long paymentId, PaymentStatus expected, List<JSONObject> gatewayPayments) {
+        // Same lock as payment verification and webhooks
+        com.locallocket.backend.entity.Order order = orderRepository.findByIdForUpdate(orderId)
+                .orElseThrow(() -> new BadRequestException("Order not found"));
+        com.locallocket.backend.entity.Payment payment = paymentRepository.findById(paymentId)
+                .orElseThrow(() -> new BadRequestException("Payment not found"));
+        if (payment.getStatus() != expected) {
+            return null;
+        }
 
-            // Update order status
-            order.setPaymentStatus(PaymentStatus.REFUNDED);
+        Optional<JSONObject> captured = withGatewayStatus(gatewayPayments, "captured");
+        Optional<JSONObject> authorized = withGatewayStatus(gatewayPayments, "authorized");
+        if (captured.isPresent()) {
+            handlePaymentCaptured(payment, captured.get());
+        } else if (authorized.isPresent()) {
+            handlePaymentAuthorized(payment, authorized.get());
+        } else if (!gatewayPayments.isEmpty()
+                && gatewayPayments.stream().allMatch(attempt -> "failed".equals(attempt.optString("status")))) {
+            handlePaymentFailed(payment, gatewayPayments.get(0));
+        } else if (gatewayPayments.isEmpty() && order.getStatus() != OrderStatus.PENDING) {
+            // Never paid, and the order has been cancelled or expired since
+            payment.setStatus(PaymentStatus.FAILED);
+            payment.setFailureReason("Checkout abandoned");
+            order.setPaymentStatus(PaymentStatus.FAILED);
             orderRepository.save(order);
-
-            logger.info("Refund processed successfully for order: {} with refund ID: {}",
-                    order.getOrderNumber(), refund.get("id"));
-
-            return new RefundResponse(
-                    refund.get("id"),
-                    payment.getAmount(),
-                    refund.get("status"),
-                    reason
-            );
-
-        } catch (RazorpayException e) {
-            logger.error("Error processing refund for order {}: ", order.getOrderNumber(), e);
-            throw new PaymentException("Refund processing failed: " + e.getMessage());
         }
+        // Anything else is still in progress at the gateway
+
+        paymentRepository.save(payment);
+        return payment.getStatus();
     }
 
     @Transactional(readOnly = true)
@@ -272,32 +318,29 @@ public class PaymentService {
         return new PaymentResponse(payment);
     }
 
-    private boolean verifyRazorpaySignature(String orderId, String paymentId, String signature) {
-        try {
-            String payload = orderId + "|" + paymentId;
-            return Utils.verifySignature(payload, signature, webhookSecret);
-        } catch (Exception e) {
-            logger.error("Error verifying Razorpay signature: ", e);
-            return false;
+    private void checkPayable(com.locallocket.backend.entity.Order order) {
+        // Check if order already has payment
+        if (order.getPayment() != null) {
+            throw new BadRequestException("Payment already exists for this order");
         }
-    }
-
-    private boolean verifyWebhookSignature(String payload, String signature) {
-        try {
-            Mac mac = Mac.getInstance("HmacSHA256");
-            SecretKeySpec secretKeySpec = new SecretKeySpec(webhookSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
-            mac.init(secretKeySpec);
 
-            byte[] computedHash = mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
-            String computedSignature = bytesToHex(computedHash);
-
-            return computedSignature.equals(signature);
-        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
-            logger.error("Error verifying webhook signature: ", e);
-            return false;
+        // Check if order is in valid state for payment
+        if (order.getStatus() != OrderStatus.PENDING) {
+            throw new BadRequestException("Order is not in valid state for payment. Current status: " + order.getStatus());
         }
     }
 
+    private void markFailed(Long paymentId, String reason) {
+        transaction.executeWithoutResult(status -> paymentRepository.findById(paymentId).ifPresent(payment -> {
+            // A late or forged failure must not undo a payment that already went through
+            if (!isSettled(payment)) {
+                payment.setStatus(PaymentStatus.FAILED);
+                payment.setFailureReason(reason);
+                paymentRepository.save(payment);
+            }
+        }));
+    }
+
     private void updatePaymentMethodDetails(com.locallocket.backend.entity.Payment payment, Payment razorpayPayment) {
         try {
             payment.setPaymentMethod(razorpayPayment.get("method"));
@@ -320,6 +363,10 @@ public class PaymentService {
     }
 
     private void handlePaymentCaptured(com.locallocket.backend.entity.Payment payment, JSONObject paymentEntity) {
+        if (isSettled(payment)) {
+            // Already confirmed through verification or an earlier delivery
+            return;
+        }
         payment.setRazorpayPaymentId(paymentEntity.getString("id"));
         payment.setStatus(PaymentStatus.SUCCESS);
 
@@ -327,11 +374,18 @@ public class PaymentService {
         com.locallocket.backend.entity.Order order = payment.getOrder();
         order.setPaymentStatus(PaymentStatus.SUCCESS);
         orderRepository.save(order);
+        convertStockHolds(order);
+        vendorOrderStream.publish(OrderEvent.PAID, order);
 
         logger.info("Payment captured via webhook for order: {}", order.getOrderNumber());
     }
 
     private void handlePaymentFailed(com.locallocket.backend.entity.Payment payment, JSONObject paymentEntity) {
+        if (isSettled(payment)) {
+            // A failed earlier attempt reported after a later one succeeded
+            logger.info("Ignoring payment failure for settled order: {}", payment.getOrder().getOrderNumber());
+            return;
+        }
         payment.setStatus(PaymentStatus.FAILED);
         payment.setFailureReason(paymentEntity.optString("error_description", "Payment failed"));
 
@@ -340,21 +394,37 @@ public class PaymentService {
         order.setPaymentStatus(PaymentStatus.FAILED);
         orderRepository.save(order);
 
+        // Leave a short window to retry the payment before the sweeper releases the stock
+        stockReservationService.expireSoon(order);
+
         logger.info("Payment failed via webhook for order: {}", order.getOrderNumber());
     }
 
     private void handlePaymentAuthorized(com.locallocket.backend.entity.Payment payment, JSONObject paymentEntity) {
+        if (isSettled(payment)) {
+            return;
+        }
         payment.setRazorpayPaymentId(paymentEntity.getString("id"));
         payment.setStatus(PaymentStatus.PENDING);
 
         logger.info("Payment authorized via webhook for order: {}", payment.getOrder().getOrderNumber());
     }
 
-    private String bytesToHex(byte[] bytes) {
-        StringBuilder result = new StringBuilder();
-        for (byte b : bytes) {
-            result.append(String.format("%02x", b));
+    private Optional<JSONObject> withGatewayStatus(List<JSONObject> gatewayPayments, String status) {
+        return gatewayPayments.stream().filter(attempt -> status.equals(attempt.optString("status"))).findFirst();
+    }
+
+    private boolean isSettled(com.locallocket.backend.entity.Payment payment) {
+        return payment.getStatus() == PaymentStatus.SUCCESS
+                || payment.getStatus() == PaymentStatus.REFUND_PENDING
+                || payment.getStatus() == PaymentStatus.REFUNDED;
+    }
+
+    private void convertStockHolds(com.locallocket.backend.entity.Order order) {
+        if (stockReservationService.convert(order) == 0 && order.getStatus() == OrderStatus.CANCELLED) {
+            // The holds expired and the order was cancelled before the payment arrived
+            logger.warn("Payment succeeded for already cancelled order {}; refunding", order.getOrderNumber());
+            refundService.enqueue(order, "Payment received after the order was cancelled");
         }
-        return result.toString();
     }
 }
@@ -0,0 +1,257 @@
+package com.locallocket.backend.service;
+
+import com.locallocket.backend.entity.WebhookEvent;
+import com.locallocket.backend.entity.WebhookEventStatus;
+import com.locallocket.backend.exception.BadRequestException;
+import com.locallocket.backend.repository.WebhookEventRepository;
+import com.locallocket.backend.security.RazorpaySignatureVerifier;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Razorpay webhook intake. A delivery is verified, stored under its event id and acknowledged;
+ * a repeated delivery of the same event is acknowledged without being stored again.
+ * <p>
+ * Stored events are applied in the background by a single drainer, in arrival order per Razorpay
+ * order. All waiting events of one order are applied in one transaction; an event that keeps
+ * failing is set aside after a few tries so it does not hold up the events behind it.
+ */
+@Component
+public class PaymentWebhookProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentWebhookProcessor.class);
+
+    @Autowired
+    private WebhookEventRepository webhookEventRepository;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private RazorpaySignatureVerifier signatureVerifier;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${webhook.processor.batch-size:100}")
+    private int batchSize;
+
+    @Value("${webhook.processor.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${webhook.retention-days:30}")
+    private long retentionDays;
+
+    private TransactionTemplate transaction;
+
+    private final ExecutorService drainer = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("webhook-processor").factory());
+
+    private final AtomicBoolean drainQueued = new AtomicBoolean();
+
+    @PostConstruct
+    void init() {
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        drainer.shutdown();
+    }
+
+    /**
+     * Verify and store a delivery. Returns false if the signature does not match.
+     */
+    public boolean receive(String payload, String signature, String eventId) {
+        if (!signatureVerifier.verifyWebhook(payload, signature)) {
+            logger.warn("Invalid webhook signature received");
+            return false;
+        }
+
+        String eventType;
+        String razorpayOrderId;
+        try {
+            JSONObject webhookPayload = new JSONObject(payload);
+            eventType = webhookPayload.getString("event");
+            razorpayOrderId = razorpayOrderId(webhookPayload);
+        } catch (JSONException e) {
+            throw new BadRequestException("Malformed webhook payload");
+        }
+
+        // Razorpay sends the event id as a header; fall back to the payload itself for anything that does not
+        String key = eventId != null && !eventId.isBlank() ? eventId : sha256(payload);
+        if (webhookEventRepository.insertIfAbsent(key, eventType, razorpayOrderId, payload)) {
+            signal();
+        } else {
+            logger.debug("Duplicate webhook delivery {} ignored", key);
+        }
+        return true;
+    }
+
+    /**
+     * Catches events whose signal was lost, such as ones stored just before a restart
+     */
+    @Scheduled(fixedDelayString = "${webhook.processor.poll-interval-ms:10000}",
+            initialDelayString = "${webhook.processor.poll-interval-ms:10000}")
+    public void poll() {
+        signal();
+    }
+
+    @Scheduled(cron = "${webhook.purge.cron:0 30 3 * * *}")
+    public void purgeProcessed() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+        Integer purged = transaction.execute(status -> webhookEventRepository.deleteProcessedBefore(cutoff));
+        if (purged != null && purged > 0) {
+            logger.info("Purged {} processed webhook events older than {}", purged, cutoff);
+        }
+    }
+
+    private void signal() {
+        // At most one drain waiting to start; one already running picks up what arrived meanwhile on its next round
+        if (drainQueued.compareAndSet(false, true)) {
+            try {
+                drainer.execute(() -> {
+                    drainQueued.set(false);
+                    drain();
+                });
+            } catch (RejectedExecutionException e) {
+                // Shutting down; the events are applied after the next start
+                drainQueued.set(false);
+            }
+        }
+    }
+
+    private void drain() {
+        boolean clean;
+        List<String> razorpayOrderIds;
+        do {
+            clean = applyPending(null);
+            razorpayOrderIds = webhookEventRepository.findPendingRazorpayOrderIds(PageRequest.of(0, batchSize));
+            for (String razorpayOrderId : razorpayOrderIds) {
+                clean &= applyPending(razorpayOrderId);
+            }
+            // A failed event would be picked up again; leave it for the next run instead of spinning
+        } while (clean && razorpayOrderIds.size() == batchSize);
+    }
+
+    private boolean applyPending(String razorpayOrderId) {
+        AtomicReference<Long> failing = new AtomicReference<>();
+        List<Long> eventIds = new ArrayList<>();
+        try {
+            transaction.executeWithoutResult(status -> {
+                List<WebhookEvent> events = razorpayOrderId != null
+                        ? webhookEventRepository.lockPendingByRazorpayOrderId(razorpayOrderId, PageRequest.of(0, batchSize))
+                        : webhookEventRepository.lockPendingUnordered(PageRequest.of(0, batchSize));
+                LocalDateTime now = LocalDateTime.now();
+                for (WebhookEvent event : events) {
+                    eventIds.add(event.getId());
+                    apply(event, now, failing);
+                }
+            });
+            return true;
+        } catch (RuntimeException e) {
+            Long eventId = failing.get();
+            if (eventId != null) {
+                logger.error("Error applying webhook event {}: ", eventId, e);
+                transaction.executeWithoutResult(status -> recordFailure(eventId, e));
+                return false;
+            }
+            // Failed writing the batch rather than in any one event; retry them one by one to find the bad one
+            logger.warn("Batched webhook write failed, retrying events one by one: {}", e.getMessage());
+            return applyOneByOne(eventIds);
+        }
+    }
+
+    private boolean applyOneByOne(List<Long> eventIds) {
+        for (Long eventId : eventIds) {
+            try {
+                transaction.executeWithoutResult(status -> webhookEventRepository.lockPendingById(eventId)
+                        .ifPresent(event -> apply(event, LocalDateTime.now(), new AtomicReference<>())));
+            } catch (RuntimeException e) {
+                logger.error("Error applying webhook event {}: ", eventId, e);
+                transaction.executeWithoutResult(status -> recordFailure(eventId, e));
+                // The events behind it wait, so they are still applied in order
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Apply one event; if the event itself is what fails, {@code failing} is left holding its id
+     */
+    private void apply(WebhookEvent event, LocalDateTime now, AtomicReference<Long> failing) {
+        try {
+            paymentService.applyWebhookEvent(event.getEventType(), new JSONObject(event.getPayload()));
+            // Its writes fail here rather than in whichever event's query flushes them next
+            webhookEventRepository.flush();
+        } catch (RuntimeException e) {
+            failing.set(event.getId());
+            throw e;
+        }
+        event.setStatus(WebhookEventStatus.PROCESSED);
+        event.setProcessedAt(now);
+    }
+
+    private void recordFailure(Long eventId, RuntimeException error) {
+        webhookEventRepository.findById(eventId).ifPresent(event -> {
+            event.setAttempts(event.getAttempts() + 1);
+            String message = String.valueOf(error.getMessage());
+            event.setLastError(message.length() > 500 ? message.substring(0, 500) : message);
+            if (event.getAttempts() >= maxAttempts) {
+                event.setStatus(WebhookEventStatus.FAILED);
+                logger.error("Giving up on webhook event {} ({}) after {} attempts",
+                        event.getEventId(), event.getEventType(), event.getAttempts());
+            }
+        });
+    }
+
+    private String razorpayOrderId(JSONObject webhookPayload) {
+        JSONObject entities = webhookPayload.optJSONObject("payload");
+        if (entities == null) {
+            return null;
+        }
+        JSONObject payment = entities.optJSONObject("payment");
+        if (payment != null) {
+            return payment.getJSONObject("entity").optString("order_id", null);
+        }
+        JSONObject order = entities.optJSONObject("order");
+        if (order != null) {
+            return order.getJSONObject("entity").optString("id", null);
+        }
+        return null;
+    }
+
+    private String sha256(String payload) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(payload.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.locallocket.backend.service;
+
+import com.locallocket.backend.entity.Product;
+import com.locallocket.backend.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory trigram inverted index over product name and description.
+ * <p>
+ * A query is split into words; candidates come from intersecting the posting lists of the
+ * words' trigrams (rarest first), then each candidate is verified and ranked.
+ * Name matches outrank description matches, and prefix / word-start matches rank highest.
+ * The index is rebuilt on startup and periodically, and updated in place on product writes.
+ */
+@Component
+public class ProductSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSearchIndex.class);
+
+    private static final int GRAM = 3;
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    private static final Comparator<ScoredProduct> BEST_FIRST =
+            Comparator.comparingInt(ScoredProduct::score).reversed().thenComparing(ScoredProduct::id);
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Value("${search.index.max-candidates:5000}")
+    private int maxCandidates;
+
+    // product id -> indexed document
+    private final Map<Long, IndexedProduct> documents = new ConcurrentHashMap<>();
+
+    // trigram -> product ids containing it in name or description
+    private final Map<String, Set<Long>> postings = new ConcurrentHashMap<>();
+
+    // Orders product writes against a running rebuild, which records their ids so it leaves them alone
+    private final Object writeLock = new Object();
+    private Set<Long> changedDuringRebuild;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${search.index.refresh-interval-ms:600000}",
+            initialDelayString = "${search.index.refresh-interval-ms:600000}")
+    public void scheduledRebuild() {
+        rebuild();
+    }
+
+    /**
+     * Reload every product from the database in batches and replace the index contents.
+     * Products written while the rebuild runs keep the version their write put in.
+     */
+    public synchronized void rebuild() {
+        Set<Long> seen = new HashSet<>();
+        Set<Long> changed = ConcurrentHashMap.newKeySet();
+        synchronized (writeLock) {
+            changedDuringRebuild = changed;
+        }
+        try {
+            List<Product> batch;
+            long afterId = 0;
+            do {
+                batch = productRepository.findBatchAfterId(afterId, PageRequest.of(0, REBUILD_BATCH_SIZE));
+                for (Product product : batch) {
+                    IndexedProduct document = new IndexedProduct(product);
+                    seen.add(document.id());
+                    synchronized (writeLock) {
+                        // The batch may have been read before the write
+                        if (!changed.contains(document.id())) {
+                            putNow(document);
+                        }
+                    }
+                    afterId = document.id();
+                }
+            } while (batch.size() == REBUILD_BATCH_SIZE);
+
+            for (Long productId : new ArrayList<>(documents.keySet())) {
+                synchronized (writeLock) {
+                    if (!seen.contains(productId) && !changed.contains(productId)) {
+                        removeNow(productId);
+                    }
+                }
+            }
+        } finally {
+            synchronized (writeLock) {
+                changedDuringRebuild = null;
+            }
+        }
+
+        logger.info("Product search index rebuilt with {} products and {} trigrams", documents.size(), postings.size());
+    }
+
+    /**
+     * Insert or refresh a product. Inside a transaction the change is applied after commit.
+     */
+    public void upsert(Product product) {
+        if (product.getId() == null) {
+            return;
+        }
+        IndexedProduct document = new IndexedProduct(product);
+        afterCommit(() -> write(document.id(), () -> putNow(document)));
+    }
+
+    public void remove(Long productId) {
+        afterCommit(() -> write(productId, () -> removeNow(productId)));
+    }
+
+    private void write(Long productId, Runnable change) {
+        synchronized (writeLock) {
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.add(productId);
+            }
+            change.run();
+        }
+    }
+
+    /**
+     * Whether the query has at least one word long enough to be looked up in the index.
+     * Shorter queries should fall back to a plain database scan.
+     */
+    public boolean supports(String query) {
+        return tokenize(query).stream().anyMatch(token -> token.length() >= GRAM);
+    }
+
+    /**
+     * The best {@code limit} product ids matching every word of the query, best match first.
+     *
+     * @param query free-text query
+     * @param vendorIds only products of these vendors, or null for all vendors
+     * @param activeOnly skip inactive products
+     */
+    public List<Long> search(String query, Set<Long> vendorIds, boolean activeOnly, int limit) {
+        return rank(query, vendorIds, activeOnly, limit).ids();
+    }
+
+    /**
+     * Run a search and load one page of matching products in rank order. The total is exact unless
+     * the query is so common that the candidate scan was cut short, in which case it is a lower bound.
+     */
+    public Page<Product> searchPage(String query, Set<Long> vendorIds, boolean activeOnly, Pageable pageable) {
+        int limit = (int) Math.min(pageable.getOffset() + pageable.getPageSize(), maxCandidates);
+        Ranked ranked = rank(query, vendorIds, activeOnly, limit);
+
+        int start = (int) Math.min(pageable.getOffset(), ranked.ids().size());
+        List<Long> pageIds = ranked.ids().subList(start, ranked.ids().size());
+
+        if (pageIds.isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, ranked.total());
+        }
+
+        Map<Long, Product> byId = productRepository.findAllWithVendorByIdIn(pageIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        List<Product> content = pageIds.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        return new PageImpl<>(content, pageable, ranked.total());
+    }
+
+    /**
+     * Candidates come from the rarest posting list and at most {@code search.index.max-candidates}
+     * of them are looked at; only the best {@code limit} hits are kept, in a heap, so the cost of a
+     * request does not grow with the number of products matching a common word.
+     */
+    private Ranked rank(String query, Set<Long> vendorIds, boolean activeOnly, int limit) {
+        List<String> tokens = tokenize(query);
+
+        // Intersect posting lists, smallest first, so the work is bounded by the rarest trigram
+        List<Set<Long>> lists = new ArrayList<>();
+        for (String token : tokens) {
+            for (String gram : trigramsOf(token)) {
+                Set<Long> posting = postings.get(gram);
+                if (posting == null) {
+                    return Ranked.NONE;
+                }
+                lists.add(posting);
+            }
+        }
+        if (lists.isEmpty() || limit <= 0) {
+            return Ranked.NONE;
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+
+        // Worst kept hit on top, so it is the one pushed out by a better one
+        PriorityQueue<ScoredProduct> best = new PriorityQueue<>(limit, BEST_FIRST.reversed());
+        int matches = 0;
+        int scanned = 0;
+        for (Long productId : lists.get(0)) {
+            if (scanned++ == maxCandidates) {
+                break;
+            }
+            boolean inAll = true;
+            for (int i = 1; i < lists.size() && inAll; i++) {
+                inAll = lists.get(i).contains(productId);
+            }
+            if (!inAll) {
+                continue;
+            }
+
+            IndexedProduct document = documents.get(productId);
+            if (document == null
+                    || (activeOnly && !document.active())
+                    || (vendorIds != null && !vendorIds.contains(document.vendorId()))) {
+                continue;
+            }
+
+            int score = score(document, tokens);
+            if (score == 0) {
+                continue;
+            }
+            matches++;
+            ScoredProduct hit = new ScoredProduct(productId, score);
+            if (best.size() < limit) {
+                best.add(hit);
+            } else if (BEST_FIRST.compare(hit, best.peek()) < 0) {
+                best.poll();
+                best.add(hit);
+            }
+        }
+
+        List<ScoredProduct> hits = new ArrayList<>(best);
+        hits.sort(BEST_FIRST);
+        return new Ranked(hits.stream().map(ScoredProduct::id).collect(Collectors.toList()), matches);
+    }
+
+    private int score(IndexedProduct document, List<String> tokens) {
+        int score = 0;
+        for (String token : tokens) {
+            int nameAt = document.name().indexOf(token);
+            int descriptionAt = document.description().indexOf(token);
+
+            if (nameAt < 0 && descriptionAt < 0) {
+                return 0; // every word must match somewhere
+            }
+
+            if (nameAt == 0) {
+                score += 20;
+            } else if (nameAt > 0) {
+                score += isWordStart(document.name(), nameAt) ? 15 : 10;
+            }
+
+            if (descriptionAt >= 0) {
+                score += isWordStart(document.description(), descriptionAt) ? 4 : 2;
+            }
+        }
+        return score;
+    }
+
+    private static boolean isWordStart(String text, int index) {
+        return index == 0 || !Character.isLetterOrDigit(text.charAt(index - 1));
+    }
+
+    private void putNow(IndexedProduct document) {
+        IndexedProduct previous = documents.put(document.id(), document);
+        if (previous != null) {
+            unindex(previous);
+        }
+        for (String gram : document.trigrams()) {
+            postings.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(document.id());
+        }
+    }
+
+    private void removeNow(Long productId) {
+        IndexedProduct previous = documents.remove(productId);
+        if (previous != null) {
+            unindex(previous);
+        }
+    }
+
+    private void unindex(IndexedProduct document) {
+        for (String gram : document.trigrams()) {
+            postings.computeIfPresent(gram, (key, ids) -> {
+                // Keep the id if a newer version of the same product still uses this trigram
+                IndexedProduct current = documents.get(document.id());
+                if (current == null || !current.trigrams().contains(gram)) {
+                    ids.remove(document.id());
+                }
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT).trim();
+    }
+
+    private static List<String> tokenize(String query) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+        return Arrays.stream(normalized.split("\\s+"))
+                .filter(token -> !token.isEmpty())
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    private static Set<String> trigramsOf(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    /**
+     * Immutable, normalized snapshot of the product fields the index needs
+     */
+    record IndexedProduct(Long id, Long vendorId, String name, String description, boolean active,
+                          Set<String> trigrams) {
+
+        IndexedProduct(Product product) {
+            this(product.getId(), product.getVendor().getId(),
+                    normalize(product.getName()), normalize(product.getDescription()),
+                    Boolean.TRUE.equals(product.getIsActive()));
+        }
+
+        private IndexedProduct(Long id, Long vendorId, String name, String description, boolean active) {
+            this(id, vendorId, name, description, active, gramsOf(name, description));
+        }
+
+        private static Set<String> gramsOf(String name, String description) {
+            Set<String> grams = trigramsOf(name);
+            grams.addAll(trigramsOf(description));
+            return Set.copyOf(grams);
+        }
+    }
+
+    private record ScoredProduct(Long id, int score) {}
+
+    private record Ranked(List<Long> ids, int total) {
+        static final Ranked NONE = new Ranked(List.of(), 0);
+    }
+}
@@ -0,0 +1,269 @@
+package com.locallocket.backend.service;
+
+import com.locallocket.backend.dto.payment.RefundResponse;
+import com.locallocket.backend.entity.*;
+import com.locallocket.backend.exception.BadRequestException;
+import com.locallocket.backend.exception.GatewayUnavailableException;
+import com.locallocket.backend.repository.OrderRepository;
+import com.locallocket.backend.repository.PaymentRepository;
+import com.locallocket.backend.repository.RefundJobRepository;
+import com.razorpay.RazorpayException;
+import com.razorpay.Refund;
+import jakarta.annotation.PostConstruct;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Refunds are queued as {@link RefundJob}s and carried out by the {@link RefundWorker}.
+ * <p>
+ * While a refund is open the payment and the order show REFUND_PENDING; REFUNDED is recorded only
+ * once the gateway reports the refund as processed. Gateway errors are retried with exponential
+ * backoff, and every try carries the job's idempotency key as the refund receipt so a retry after
+ * a lost response picks up the refund that was already created instead of issuing a second one.
+ */
+@Service
+public class RefundService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefundService.class);
+
+    @Autowired
+    private RefundJobRepository refundJobRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private PaymentGateway paymentGateway;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${refund.retry.base-delay-ms:10000}")
+    private long baseDelayMs;
+
+    @Value("${refund.retry.max-delay-ms:3600000}")
+    private long maxDelayMs;
+
+    @Value("${refund.retry.max-attempts:12}")
+    private int maxAttempts;
+
+    @Value("${refund.confirm-interval-ms:300000}")
+    private long confirmIntervalMs;
+
+    // Short transactions around gateway calls; see PaymentGateway
+    private TransactionTemplate transaction;
+    private TransactionTemplate readOnlyTransaction;
+
+    @PostConstruct
+    void init() {
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Queue a full refund of the order's payment as part of the caller's transaction, so the
+     * refund is recorded if and only if the cancellation is. Queuing twice is a no-op.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(Order order, String reason) {
+        Payment payment = order.getPayment();
+        if (payment == null || !payment.isSuccessful()) {
+            logger.warn("No successful payment to refund for order {}", order.getOrderNumber());
+            return;
+        }
+        if (refundJobRepository.findByPaymentId(payment.getId()).isPresent()) {
+            return;
+        }
+
+        refundJobRepository.save(new RefundJob(order.getId(), payment.getId(), payment.getAmount(), truncate(reason)));
+
+        payment.setStatus(PaymentStatus.REFUND_PENDING);
+        paymentRepository.save(payment);
+        order.setPaymentStatus(PaymentStatus.REFUND_PENDING);
+        orderRepository.save(order);
+
+        logger.info("Refund queued for order: {}", order.getOrderNumber());
+    }
+
+    @Transactional(readOnly = true)
+    public RefundResponse getRefund(Order order) {
+        RefundJob job = refundJobRepository.findByOrderId(order.getId())
+                .orElseThrow(() -> new BadRequestException("No refund found for this order"));
+        return new RefundResponse(job);
+    }
+
+    /**
+     * Take one step on a claimed job: submit the refund, or ask the gateway how a submitted one is doing.
+     * The gateway call sits between two short transactions and never inside one.
+     */
+    public void process(Long jobId) {
+        PendingRefund pending = readOnlyTransaction.execute(status -> refundJobRepository.findById(jobId)
+                .filter(RefundJob::isOpen)
+                .map(job -> new PendingRefund(job, paymentRepository.findById(job.getPaymentId())
+                        .map(Payment::getRazorpayPaymentId)
+                        .orElse(null)))
+                .orElse(null));
+        if (pending == null) {
+            return;
+        }
+
+        Refund refund;
+        try {
+            refund = pending.job().getRazorpayRefundId() != null
+                    ? paymentGateway.fetchRefund(pending.razorpayPaymentId(), pending.job().getRazorpayRefundId())
+                    : submit(pending.job(), pending.razorpayPaymentId());
+        } catch (GatewayUnavailableException e) {
+            // Turned away before reaching the gateway; the claim lease runs out and the job is picked up again
+            logger.debug("Refund for order {} deferred: {}", pending.job().getOrderId(), e.getMessage());
+            return;
+        } catch (RazorpayException e) {
+            logger.warn("Refund attempt for order {} failed: {}", pending.job().getOrderId(), e.getMessage());
+            transaction.executeWithoutResult(status -> retryLater(jobId, e.getMessage()));
+            return;
+        }
+
+        String refundId = refund.get("id");
+        String gatewayStatus = refund.get("status");
+        transaction.executeWithoutResult(status -> record(jobId, refundId, gatewayStatus));
+    }
+
+    /**
+     * Record a refund update pushed by a gateway webhook, which usually lands before the worker's next check.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void applyGatewayRefund(JSONObject refundEntity) {
+        String refundId = refundEntity.getString("id");
+        Optional<RefundJob> job = refundJobRepository.findByIdempotencyKey(refundEntity.optString("receipt"))
+                .or(() -> refundJobRepository.findByRazorpayRefundId(refundId));
+        if (job.isEmpty()) {
+            // Issued from the dashboard, not by us
+            logger.info("No refund job for gateway refund {}", refundId);
+            return;
+        }
+        record(job.get().getId(), refundId, refundEntity.getString("status"));
+    }
+
+    private Refund submit(RefundJob job, String razorpayPaymentId) throws RazorpayException {
+        // An earlier try may have reached the gateway without its response reaching us
+        if (job.getAttempts() > 0) {
+            for (Refund existing : paymentGateway.fetchRefunds(razorpayPaymentId)) {
+                if (job.getIdempotencyKey().equals(existing.toJson().optString("receipt"))) {
+                    return existing;
+                }
+            }
+        }
+
+        // Create refund request JSON
+        JSONObject refundRequest = new JSONObject();
+        refundRequest.put("amount", job.getAmount().multiply(new BigDecimal("100")).intValue()); // Convert to paise
+        refundRequest.put("speed", "normal"); // normal or optimum
+        refundRequest.put("receipt", job.getIdempotencyKey());
+
+        // Add notes
+        JSONObject notes = new JSONObject();
+        notes.put("order_id", job.getOrderId());
+        notes.put("refund_reason", job.getReason());
+        refundRequest.put("notes", notes);
+
+        return paymentGateway.refund(razorpayPaymentId, refundRequest);
+    }
+
+    private void record(Long jobId, String refundId, String gatewayStatus) {
+        RefundJob job = refundJobRepository.findById(jobId).orElseThrow();
+        if (!job.isOpen()) {
+            return;
+        }
+        job.setRazorpayRefundId(refundId);
+        job.setLastError(null);
+
+        switch (gatewayStatus) {
+            case "processed":
+                job.setStatus(RefundJobStatus.SUCCEEDED);
+                markRefunded(job);
+                logger.info("Refund processed for order {} with refund ID: {}", job.getOrderId(), refundId);
+                break;
+            case "failed":
+                fail(job, "Refund " + refundId + " failed at the gateway");
+                break;
+            default:
+                // Accepted but not settled yet; ask again later
+                job.setStatus(RefundJobStatus.SUBMITTED);
+                job.setNextAttemptAt(LocalDateTime.now().plusNanos(confirmIntervalMs * 1_000_000));
+        }
+        refundJobRepository.save(job);
+    }
+
+    private void retryLater(Long jobId, String error) {
+        RefundJob job = refundJobRepository.findById(jobId).orElseThrow();
+        if (!job.isOpen()) {
+            return;
+        }
+        job.setAttempts(job.getAttempts() + 1);
+        job.setLastError(truncate(error));
+
+        if (job.getAttempts() >= maxAttempts) {
+            fail(job, "Gave up after " + job.getAttempts() + " attempts: " + error);
+        } else {
+            job.setNextAttemptAt(LocalDateTime.now().plusNanos(backoffMs(job.getAttempts()) * 1_000_000));
+        }
+        refundJobRepository.save(job);
+    }
+
+    private long backoffMs(int attempts) {
+        long delay = Math.min(maxDelayMs, baseDelayMs << Math.min(attempts - 1, 20));
+        // Up to 20% jitter so jobs that failed together do not retry together
+        return delay + ThreadLocalRandom.current().nextLong(delay / 5 + 1);
+    }
+
+    private void markRefunded(RefundJob job) {
+        Payment payment = paymentRepository.findById(job.getPaymentId()).orElseThrow();
+        payment.setRefundId(job.getRazorpayRefundId());
+        payment.setRefundAmount(job.getAmount());
+        payment.setRefundedAt(LocalDateTime.now());
+        payment.setStatus(PaymentStatus.REFUNDED);
+        paymentRepository.save(payment);
+
+        Order order = payment.getOrder();
+        order.setPaymentStatus(PaymentStatus.REFUNDED);
+        orderRepository.save(order);
+    }
+
+    private void fail(RefundJob job, String error) {
+        job.setStatus(RefundJobStatus.FAILED);
+        job.setLastError(truncate(error));
+
+        // The money was not returned; show the payment as it is and leave the job for manual follow-up
+        Payment payment = paymentRepository.findById(job.getPaymentId()).orElseThrow();
+        payment.setStatus(PaymentStatus.SUCCESS);
+        paymentRepository.save(payment);
+
+        Order order = payment.getOrder();
+        order.setPaymentStatus(PaymentStatus.SUCCESS);
+        orderRepository.save(order);
+
+        logger.error("Refund for order {} failed and needs manual follow-up: {}", job.getOrderId(), error);
+    }
+
+    private String truncate(String value) {
+        return value != null && value.length() > 500 ? value.substring(0, 500) : value;
+    }
+
+    private record PendingRefund(RefundJob job, String razorpayPaymentId) {}
+}
@@ -0,0 +1,90 @@
+package com.locallocket.backend.service;
+
+import com.locallocket.backend.repository.RefundJobRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Drains the refund queue. Due jobs are claimed in batches and run on a small fixed pool, which
+ * caps how many refund calls are in flight at the gateway at once.
+ */
+@Component
+public class RefundWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefundWorker.class);
+
+    @Autowired
+    private RefundService refundService;
+
+    @Autowired
+    private RefundJobRepository refundJobRepository;
+
+    @Autowired
+    private PaymentGateway paymentGateway;
+
+    @Value("${refund.worker.threads:4}")
+    private int threads;
+
+    @Value("${refund.worker.batch-size:20}")
+    private int batchSize;
+
+    @Value("${refund.worker.lease-seconds:120}")
+    private long leaseSeconds;
+
+    private ExecutorService workers;
+
+    @PostConstruct
+    void init() {
+        this.workers = Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("refund-worker-", 1).factory());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdown();
+    }
+
+    @Scheduled(fixedDelayString = "${refund.worker.poll-interval-ms:5000}",
+            initialDelayString = "${refund.worker.poll-interval-ms:5000}")
+    public void poll() {
+        List<Long> jobIds;
+        do {
+            // Leave the queue alone while the gateway is known to be down
+            if (!paymentGateway.isAvailable()) {
+                return;
+            }
+            LocalDateTime now = LocalDateTime.now();
+            jobIds = refundJobRepository.claimDue(now, now.plusSeconds(leaseSeconds), batchSize);
+
+            List<Future<?>> running = new ArrayList<>(jobIds.size());
+            for (Long jobId : jobIds) {
+                running.add(workers.submit(() -> refundService.process(jobId)));
+            }
+            // Finish the batch before claiming more so the lease never runs out under a queued job
+            for (int i = 0; i < running.size(); i++) {
+                try {
+                    running.get(i).get();
+                } catch (ExecutionException e) {
+                    // The lease expires and the job is claimed again
+                    logger.error("Error processing refund job {}: ", jobIds.get(i), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        } while (jobIds.size() == batchSize);
+    }
+}
@@ -0,0 +1,148 @@
+package com.locallocket.backend.service;
+
+import com.locallocket.backend.entity.Order;
+import com.locallocket.backend.entity.OrderItem;
+import com.locallocket.backend.entity.ReservationStatus;
+import com.locallocket.backend.entity.StockReservation;
+import com.locallocket.backend.exception.BadRequestException;
+import com.locallocket.backend.repository.ProductRepository;
+import com.locallocket.backend.repository.StockReservationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Time-limited stock holds for orders waiting on payment.
+ * <p>
+ * A hold takes stock from the product immediately, so a checkout either gets its units or fails fast.
+ * Holds are converted when payment succeeds and released (stock given back) when the order is
+ * cancelled, rejected or left unpaid past its expiry. Every transition is a conditional update on
+ * the hold's status, so a release can never give the same stock back twice.
+ */
+@Service
+public class StockReservationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockReservationService.class);
+
+    @Autowired
+    private StockReservationRepository stockReservationRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Value("${stock.reservation.ttl-seconds:900}")
+    private long holdTtlSeconds;
+
+    @Value("${stock.reservation.failed-payment-grace-seconds:120}")
+    private long failedPaymentGraceSeconds;
+
+    /**
+     * Take stock for every item of a new order and record the holds.
+     * Must run in the transaction that creates the order.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void hold(Order order) {
+        Map<Long, Integer> quantities = quantitiesByProduct(order);
+
+        // Conditional decrement in the database: concurrent checkouts cannot oversell the last unit
+        List<Long> insufficient = productRepository.decrementStock(quantities);
+
+        if (!insufficient.isEmpty()) {
+            String names = order.getItems().stream()
+                    .filter(item -> insufficient.contains(item.getProduct().getId()))
+                    .map(OrderItem::getProductName)
+                    .distinct()
+                    .collect(Collectors.joining(", "));
+            // Rolls back the whole order, including any rows already decremented
+            throw new BadRequestException("Insufficient stock for " + names);
+        }
+
+        stockReservationRepository.insertHolds(order.getId(), quantities,
+                LocalDateTime.now().plusSeconds(holdTtlSeconds));
+    }
+
+    /**
+     * Payment succeeded: the held stock is now sold
+     *
+     * @return number of holds converted (0 if there were none left to convert)
+     */
+    @Transactional
+    public int convert(Order order) {
+        return stockReservationRepository.convertHolds(order.getId());
+    }
+
+    /**
+     * Give the order's stock back, whether it is still held or was already paid for.
+     * Safe to call more than once and from concurrent transactions.
+     */
+    @Transactional
+    public void release(Order order) {
+        List<StockReservation> reservations = stockReservationRepository.findByOrderIdAndStatusInForUpdate(
+                order.getId(), EnumSet.of(ReservationStatus.HELD, ReservationStatus.CONVERTED));
+
+        if (reservations.isEmpty()) {
+            if (!stockReservationRepository.existsByOrderId(order.getId())) {
+                // Placed before the ledger existed
+                productRepository.incrementStock(quantitiesByProduct(order));
+            }
+            return;
+        }
+
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (StockReservation reservation : reservations) {
+            quantities.merge(reservation.getProductId(), reservation.getQuantity(), Integer::sum);
+            reservation.setStatus(ReservationStatus.RELEASED);
+        }
+        productRepository.incrementStock(quantities);
+
+        logger.debug("Released {} stock holds for order {}", reservations.size(), order.getOrderNumber());
+    }
+
+    /**
+     * A payment attempt failed. The customer may still retry from the same checkout, so the holds are
+     * kept for a short grace period and then released by the sweeper.
+     */
+    @Transactional
+    public void expireSoon(Order order) {
+        stockReservationRepository.shortenHolds(order.getId(),
+                LocalDateTime.now().plusSeconds(failedPaymentGraceSeconds));
+    }
+
+    /**
+     * Payment is in flight at the gateway; keep the holds for another full TTL
+     */
+    @Transactional
+    public void extend(Order order) {
+        stockReservationRepository.extendHolds(order.getId(), LocalDateTime.now().plusSeconds(holdTtlSeconds));
+    }
+
+    @Transactional(readOnly = true)
+    public List<Long> findExpiredOrderIds(int limit) {
+        return stockReservationRepository.findExpiredOrderIds(LocalDateTime.now(), PageRequest.of(0, limit));
+    }
+
+    @Transactional
+    public int purgeSettled(LocalDateTime cutoff, int limit) {
+        return stockReservationRepository.purgeSettled(cutoff, limit);
+    }
+
+    private Map<Long, Integer> quantitiesByProduct(Order order) {
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (OrderItem item : order.getItems()) {
+            quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+}
@@ -0,0 +1,74 @@
+package com.locallocket.backend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Periodically expires unpaid orders whose stock holds have timed out, and purges settled holds.
+ * Each order is handled in its own transaction so one failure does not stall the batch.
+ */
+@Component
+public class StockReservationSweeper {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockReservationSweeper.class);
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Value("${stock.reservation.sweep.batch-size:200}")
+    private int batchSize;
+
+    @Value("${stock.reservation.retention-days:7}")
+    private long retentionDays;
+
+    @Scheduled(fixedDelayString = "${stock.reservation.sweep.interval-ms:30000}",
+            initialDelayString = "${stock.reservation.sweep.interval-ms:30000}")
+    public void sweepExpired() {
+        int expired = 0;
+        boolean clean;
+        List<Long> orderIds;
+        do {
+            clean = true;
+            orderIds = stockReservationService.findExpiredOrderIds(batchSize);
+            for (Long orderId : orderIds) {
+                try {
+                    orderService.expireUnpaidOrder(orderId);
+                    expired++;
+                } catch (Exception e) {
+                    clean = false;
+                    logger.error("Error expiring stock holds for order {}: ", orderId, e);
+                }
+            }
+            // A failed order would be picked up again; leave it for the next run instead of spinning
+        } while (clean && orderIds.size() == batchSize);
+
+        if (expired > 0) {
+            logger.info("Expired stock holds for {} orders", expired);
+        }
+    }
+
+    @Scheduled(cron = "${stock.reservation.purge.cron:0 15 3 * * *}")
+    public void purgeSettled() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+        int purged = 0;
+        int deleted;
+        do {
+            deleted = stockReservationService.purgeSettled(cutoff, batchSize);
+            purged += deleted;
+        } while (deleted == batchSize);
+
+        if (purged > 0) {
+            logger.info("Purged {} settled stock holds older than {}", purged, cutoff);
+        }
+    }
+}
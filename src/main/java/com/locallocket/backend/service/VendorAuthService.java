@@ -23,9 +23,12 @@ public class VendorAuthService {
     private final VendorRepository vendorRepository;
     private final PasswordEncoder passwordEncoder;
     private final JwtTokenProvider jwtTokenProvider;
+    private final VendorSpatialIndex vendorSpatialIndex;
 
-    public VendorAuthService(UserRepository ur, VendorRepository vr, PasswordEncoder pe, JwtTokenProvider jtp) {
+    public VendorAuthService(UserRepository ur, VendorRepository vr, PasswordEncoder pe, JwtTokenProvider jtp,
+                             VendorSpatialIndex vsi) {
         this.userRepository = ur; this.vendorRepository = vr; this.passwordEncoder = pe; this.jwtTokenProvider = jtp;
+        this.vendorSpatialIndex = vsi;
     }
 
     @Transactional
@@ -62,6 +65,9 @@ public class VendorAuthService {
         v.setIsActive(true);
         vendorRepository.save(v);
 
+        // Make the new shop discoverable in nearby searches once the signup commits
+        vendorSpatialIndex.upsert(v);
+
         String token = jwtTokenProvider.generateToken(u.getEmail(), u.getId());
         return new VendorAuthResponse(token, new UserDto(u), v.getId(), "Vendor registration successful");
     }
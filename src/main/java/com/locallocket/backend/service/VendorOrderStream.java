@@ -0,0 +1,235 @@
+package com.locallocket.backend.service;
+
+import com.locallocket.backend.dto.order.OrderEvent;
+import com.locallocket.backend.entity.Order;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server-sent event fan-out of order changes to connected vendors.
+ * <p>
+ * Publishing never blocks: an event is offered to each of the vendor's connections, whose own
+ * bounded buffer is drained by a short-lived virtual thread. A connection that cannot keep up
+ * with its buffer is closed rather than slowing everyone else down; the client reconnects and
+ * catches up through the order feed. Idle connections hold no thread, only a heartbeat.
+ */
+@Component
+public class VendorOrderStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(VendorOrderStream.class);
+
+    @Value("${order.stream.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${order.stream.buffer-size:64}")
+    private int bufferSize;
+
+    @Value("${order.stream.reconnect-ms:3000}")
+    private long reconnectMs;
+
+    @Value("${order.stream.max-connections-per-vendor:10}")
+    private int maxConnectionsPerVendor;
+
+    // vendor id -> open connections
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Open a stream for the vendor. Beyond the per-vendor limit the oldest connection is closed.
+     */
+    public SseEmitter subscribe(Long vendorId) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(vendorId, emitter);
+
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> subscriber.close());
+        emitter.onError(error -> subscriber.close());
+
+        Set<Subscriber> vendorSubscribers = subscribers.computeIfAbsent(vendorId, key -> ConcurrentHashMap.newKeySet());
+        vendorSubscribers.add(subscriber);
+        connections.incrementAndGet();
+
+        while (vendorSubscribers.size() > maxConnectionsPerVendor) {
+            vendorSubscribers.stream()
+                    .min(Comparator.comparingLong(Subscriber::connectedAt))
+                    .ifPresent(Subscriber::close);
+        }
+
+        // Flushes the response headers through proxies and tells the client how soon to reconnect
+        subscriber.offer(SseEmitter.event().name("connected").reconnectTime(reconnectMs).data(vendorId));
+        return emitter;
+    }
+
+    /**
+     * Push an order change to the order's vendor. Inside a transaction the event is sent only after commit.
+     */
+    public void publish(String type, Order order) {
+        Long vendorId = order.getVendor().getId();
+        afterCommit(() -> {
+            Set<Subscriber> vendorSubscribers = subscribers.get(vendorId);
+            if (vendorSubscribers == null || vendorSubscribers.isEmpty()) {
+                return;
+            }
+            OrderEvent event = new OrderEvent(type, order);
+            for (Subscriber subscriber : vendorSubscribers) {
+                subscriber.offer(SseEmitter.event()
+                        .name(type)
+                        .id(String.valueOf(event.getOrderId()))
+                        .data(event, MediaType.APPLICATION_JSON));
+            }
+        });
+    }
+
+    public int connectionCount() {
+        return connections.get();
+    }
+
+    @Scheduled(fixedDelayString = "${order.stream.heartbeat-ms:15000}",
+            initialDelayString = "${order.stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        for (Set<Subscriber> vendorSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : vendorSubscribers) {
+                // A connection with events still queued is busy anyway; those writes prove it alive
+                if (subscriber.idle()) {
+                    // Builders are consumed by send, so every connection gets its own
+                    subscriber.offer(SseEmitter.event().comment("keepalive"));
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.values().forEach(vendorSubscribers -> vendorSubscribers.forEach(Subscriber::close));
+        senders.shutdown();
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.vendorId(), (key, vendorSubscribers) -> {
+            if (vendorSubscribers.remove(subscriber)) {
+                connections.decrementAndGet();
+            }
+            return vendorSubscribers.isEmpty() ? null : vendorSubscribers;
+        });
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * One open connection with its own bounded send buffer and at most one sender at a time
+     */
+    private final class Subscriber {
+
+        private final Long vendorId;
+        private final SseEmitter emitter;
+        private final long connectedAt = System.nanoTime();
+        private final BlockingQueue<SseEmitter.SseEventBuilder> buffer = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        Subscriber(Long vendorId, SseEmitter emitter) {
+            this.vendorId = vendorId;
+            this.emitter = emitter;
+        }
+
+        Long vendorId() {
+            return vendorId;
+        }
+
+        long connectedAt() {
+            return connectedAt;
+        }
+
+        boolean idle() {
+            return buffer.isEmpty() && !sending.get();
+        }
+
+        void offer(SseEmitter.SseEventBuilder event) {
+            if (closed.get()) {
+                return;
+            }
+            if (!buffer.offer(event)) {
+                logger.warn("Closing order stream of vendor {}: client is not keeping up", vendorId);
+                close();
+                return;
+            }
+            scheduleSend();
+        }
+
+        private void scheduleSend() {
+            if (sending.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RuntimeException e) {
+                    // Executor already shut down
+                    sending.set(false);
+                    close();
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                SseEmitter.SseEventBuilder event;
+                while (!closed.get() && (event = buffer.poll()) != null) {
+                    emitter.send(event);
+                }
+            } catch (Exception e) {
+                // Client went away; the container reports it through onError/onCompletion as well
+                logger.debug("Order stream send to vendor {} failed: {}", vendorId, e.getMessage());
+                close();
+            } finally {
+                sending.set(false);
+            }
+            // An event offered while this sender was finishing would otherwise wait for the next one
+            if (!buffer.isEmpty() && !closed.get()) {
+                scheduleSend();
+            }
+        }
+
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                buffer.clear();
+                remove(this);
+                try {
+                    emitter.complete();
+                } catch (Exception ignored) {
+                    // Already completed by the container
+                }
+            }
+        }
+    }
+}
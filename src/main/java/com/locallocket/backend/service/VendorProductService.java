@@ -11,11 +11,16 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Set;
+
 @Service
 public class VendorProductService {
     private final ProductRepository productRepository;
+    private final ProductSearchIndex productSearchIndex;
 
-    public VendorProductService(ProductRepository pr) { this.productRepository = pr; }
+    public VendorProductService(ProductRepository pr, ProductSearchIndex psi) {
+        this.productRepository = pr; this.productSearchIndex = psi;
+    }
 
     @Transactional
     public ProductResponse createProduct(Vendor vendor, ProductCreateRequest req) {
@@ -28,14 +33,20 @@ public class VendorProductService {
         p.setStock(req.getStock());
         p.setIsActive(req.getIsActive() != null ? req.getIsActive() : true);
         productRepository.save(p);
+        productSearchIndex.upsert(p);
         return new ProductResponse(p);
     }
 
     @Transactional(readOnly=true)
     public Page<ProductResponse> listProducts(Vendor vendor, String query, Pageable pageable) {
-        Page<Product> page = (query == null || query.isBlank())
-                ? productRepository.findByVendor(vendor, pageable)
-                : productRepository.findByVendorAndNameContainingIgnoreCase(vendor, query.trim(), pageable);
+        Page<Product> page;
+        if (query == null || query.isBlank()) {
+            page = productRepository.findByVendor(vendor, pageable);
+        } else if (productSearchIndex.supports(query)) {
+            page = productSearchIndex.searchPage(query, Set.of(vendor.getId()), false, pageable);
+        } else {
+            page = productRepository.findByVendorAndNameContainingIgnoreCase(vendor, query.trim(), pageable);
+        }
         return page.map(ProductResponse::new);
     }
 
@@ -53,6 +64,7 @@ public class VendorProductService {
         p.setStock(req.getStock());
         p.setIsActive(req.getIsActive());
         productRepository.save(p);
+        productSearchIndex.upsert(p);
         return new ProductResponse(p);
     }
 
@@ -64,6 +76,7 @@ public class VendorProductService {
             throw new BadRequestException("Not allowed to delete this product");
         }
         productRepository.delete(p);
+        productSearchIndex.remove(productId);
     }
 
     @Transactional(readOnly = true)
@@ -89,6 +102,7 @@ public class VendorProductService {
 
         product.setIsActive(!product.getIsActive());
         productRepository.save(product);
+        productSearchIndex.upsert(product);
         return new ProductResponse(product);
     }
 
@@ -0,0 +1,323 @@
+package com.locallocket.backend.service;
+
+import com.locallocket.backend.entity.Vendor;
+import com.locallocket.backend.repository.VendorRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory grid index over active vendor locations.
+ * <p>
+ * The globe is split into fixed-size lat/lon cells. Radius and k-nearest lookups only
+ * visit the cells overlapping the search area, so they never touch the database.
+ * The index is rebuilt on startup and periodically, and updated in place on vendor writes.
+ */
+@Component
+public class VendorSpatialIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(VendorSpatialIndex.class);
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    private static final double KM_PER_DEGREE_LAT = 111.32;
+
+    @Autowired
+    private VendorRepository vendorRepository;
+
+    @Value("${location.index.cell-size-degrees:0.05}")
+    private double cellSizeDegrees;
+
+    // cell key -> (vendor id -> location)
+    private final Map<Long, Map<Long, VendorLocation>> cells = new ConcurrentHashMap<>();
+
+    // vendor id -> location, used to find the old cell when a vendor moves
+    private final Map<Long, VendorLocation> vendors = new ConcurrentHashMap<>();
+
+    // Orders vendor writes against a running rebuild, which records their ids so it leaves them alone
+    private final Object writeLock = new Object();
+    private Set<Long> changedDuringRebuild;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${location.index.refresh-interval-ms:300000}",
+            initialDelayString = "${location.index.refresh-interval-ms:300000}")
+    public void scheduledRebuild() {
+        rebuild();
+    }
+
+    /**
+     * Reload all active vendors from the database and replace the index contents.
+     * Vendors written while the rebuild runs keep the state their write put in.
+     */
+    public synchronized void rebuild() {
+        Set<Long> changed = ConcurrentHashMap.newKeySet();
+        synchronized (writeLock) {
+            changedDuringRebuild = changed;
+        }
+        try {
+            List<Vendor> activeVendors = vendorRepository.findByIsActiveTrue();
+
+            Map<Long, VendorLocation> fresh = new HashMap<>();
+            for (Vendor vendor : activeVendors) {
+                if (vendor.getLatitude() != null && vendor.getLongitude() != null) {
+                    fresh.put(vendor.getId(), new VendorLocation(vendor));
+                }
+            }
+
+            // Drop vendors that disappeared or went inactive, then (re)insert everything else;
+            // the snapshot may have been read before a write, which then wins
+            synchronized (writeLock) {
+                for (Long vendorId : new ArrayList<>(vendors.keySet())) {
+                    if (!fresh.containsKey(vendorId) && !changed.contains(vendorId)) {
+                        removeNow(vendorId);
+                    }
+                }
+                for (VendorLocation location : fresh.values()) {
+                    if (!changed.contains(location.id())) {
+                        putNow(location);
+                    }
+                }
+            }
+        } finally {
+            synchronized (writeLock) {
+                changedDuringRebuild = null;
+            }
+        }
+
+        logger.info("Vendor spatial index rebuilt with {} vendors in {} cells", vendors.size(), cells.size());
+    }
+
+    /**
+     * Insert or move a vendor. Inactive vendors and vendors without coordinates are removed.
+     * When called inside a transaction the change is applied only after commit.
+     */
+    public void upsert(Vendor vendor) {
+        if (vendor.getId() == null) {
+            return;
+        }
+
+        if (!Boolean.TRUE.equals(vendor.getIsActive())
+                || vendor.getLatitude() == null || vendor.getLongitude() == null) {
+            remove(vendor.getId());
+            return;
+        }
+
+        VendorLocation location = new VendorLocation(vendor);
+        afterCommit(() -> write(location.id(), () -> putNow(location)));
+    }
+
+    public void remove(Long vendorId) {
+        afterCommit(() -> write(vendorId, () -> removeNow(vendorId)));
+    }
+
+    private void write(Long vendorId, Runnable change) {
+        synchronized (writeLock) {
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.add(vendorId);
+            }
+            change.run();
+        }
+    }
+
+    public int size() {
+        return vendors.size();
+    }
+
+    /**
+     * All indexed vendors within radiusKm of the given point, nearest first
+     */
+    public List<VendorHit> withinRadius(double lat, double lon, double radiusKm) {
+        List<VendorHit> hits = new ArrayList<>();
+
+        double latDelta = radiusKm / KM_PER_DEGREE_LAT;
+        double lonDelta = lonDegreesFor(radiusKm, lat);
+
+        long minLat = cellIndex(Math.max(lat - latDelta, -90.0));
+        long maxLat = cellIndex(Math.min(lat + latDelta, 90.0));
+        long minLon = cellIndex(lon - lonDelta);
+        long maxLon = cellIndex(lon + lonDelta);
+
+        if ((maxLat - minLat + 1) * (maxLon - minLon + 1) > vendors.size()) {
+            // More cells than vendors: looking at every vendor is cheaper than visiting the cells
+            for (VendorLocation location : vendors.values()) {
+                addIfWithin(hits, location, lat, lon, radiusKm);
+            }
+        } else {
+            for (long latIdx = minLat; latIdx <= maxLat; latIdx++) {
+                for (long lonIdx = minLon; lonIdx <= maxLon; lonIdx++) {
+                    Map<Long, VendorLocation> cell = cells.get(cellKey(latIdx, lonIdx));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (VendorLocation location : cell.values()) {
+                        addIfWithin(hits, location, lat, lon, radiusKm);
+                    }
+                }
+            }
+        }
+
+        hits.sort(Comparator.comparingDouble(VendorHit::distanceKm));
+        return hits;
+    }
+
+    /**
+     * Up to k nearest indexed vendors within maxRadiusKm, nearest first.
+     * Searches outward ring by ring and stops once the ring is farther than the k-th hit.
+     */
+    public List<VendorHit> nearest(double lat, double lon, int k, double maxRadiusKm) {
+        if (k <= 0 || vendors.isEmpty()) {
+            return List.of();
+        }
+
+        long centerLat = cellIndex(lat);
+        long centerLon = cellIndex(lon);
+        double cellKm = cellSizeDegrees * KM_PER_DEGREE_LAT * Math.max(Math.cos(Math.toRadians(lat)), 0.01);
+        // No ring needs to be wider than the globe
+        long maxRing = (long) Math.min(Math.ceil(maxRadiusKm / cellKm), 360.0 / cellSizeDegrees) + 1;
+
+        // Visiting more cells than there are vendors costs more than sorting every vendor by distance
+        if ((2L * maxRing + 1) * (2L * maxRing + 1) > vendors.size()) {
+            List<VendorHit> hits = withinRadius(lat, lon, maxRadiusKm);
+            return hits.size() > k ? new ArrayList<>(hits.subList(0, k)) : hits;
+        }
+
+        List<VendorHit> hits = new ArrayList<>();
+        for (long ring = 0; ring <= maxRing; ring++) {
+            for (long latIdx = centerLat - ring; latIdx <= centerLat + ring; latIdx++) {
+                for (long lonIdx = centerLon - ring; lonIdx <= centerLon + ring; lonIdx++) {
+                    // Only visit the outer edge of the ring; inner cells were covered already
+                    if (Math.abs(latIdx - centerLat) != ring && Math.abs(lonIdx - centerLon) != ring) {
+                        continue;
+                    }
+                    Map<Long, VendorLocation> cell = cells.get(cellKey(latIdx, lonIdx));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (VendorLocation location : cell.values()) {
+                        addIfWithin(hits, location, lat, lon, maxRadiusKm);
+                    }
+                }
+            }
+
+            if (hits.size() >= k) {
+                hits.sort(Comparator.comparingDouble(VendorHit::distanceKm));
+                // Anything outside this ring is at least ring * cellKm away
+                if (hits.get(k - 1).distanceKm() <= ring * cellKm) {
+                    break;
+                }
+            }
+        }
+
+        hits.sort(Comparator.comparingDouble(VendorHit::distanceKm));
+        return hits.size() > k ? new ArrayList<>(hits.subList(0, k)) : hits;
+    }
+
+    // Haversine distance in kilometers
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double deltaLat = Math.toRadians(lat2 - lat1);
+        double deltaLon = Math.toRadians(lon2 - lon1);
+
+        double a = Math.sin(deltaLat / 2) * Math.sin(deltaLat / 2) +
+                Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
+                        Math.sin(deltaLon / 2) * Math.sin(deltaLon / 2);
+
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+
+        return EARTH_RADIUS_KM * c;
+    }
+
+    private static void addIfWithin(List<VendorHit> hits, VendorLocation location,
+                                    double lat, double lon, double radiusKm) {
+        double distanceKm = distanceKm(lat, lon, location.latitude(), location.longitude());
+        if (distanceKm <= radiusKm) {
+            hits.add(new VendorHit(location, distanceKm));
+        }
+    }
+
+    private void putNow(VendorLocation location) {
+        VendorLocation previous = vendors.put(location.id(), location);
+        if (previous != null) {
+            removeFromCell(previous);
+        }
+        cells.computeIfAbsent(cellKey(cellIndex(location.latitude()), cellIndex(location.longitude())),
+                key -> new ConcurrentHashMap<>()).put(location.id(), location);
+    }
+
+    private void removeNow(Long vendorId) {
+        VendorLocation previous = vendors.remove(vendorId);
+        if (previous != null) {
+            removeFromCell(previous);
+        }
+    }
+
+    private void removeFromCell(VendorLocation location) {
+        long key = cellKey(cellIndex(location.latitude()), cellIndex(location.longitude()));
+        cells.computeIfPresent(key, (k, cell) -> {
+            cell.remove(location.id(), location);
+            return cell.isEmpty() ? null : cell;
+        });
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private double lonDegreesFor(double radiusKm, double lat) {
+        double cosLat = Math.cos(Math.toRadians(lat));
+        if (cosLat < 0.01) {
+            return 180.0; // near the poles every longitude is close
+        }
+        return Math.min(radiusKm / (KM_PER_DEGREE_LAT * cosLat), 180.0);
+    }
+
+    private long cellIndex(double degrees) {
+        return (long) Math.floor(degrees / cellSizeDegrees);
+    }
+
+    private static long cellKey(long latIdx, long lonIdx) {
+        return (latIdx << 32) ^ (lonIdx & 0xffffffffL);
+    }
+
+    /**
+     * Immutable snapshot of the vendor fields needed to answer nearby queries
+     */
+    public record VendorLocation(Long id, String shopName, String description, String address,
+                                 double latitude, double longitude,
+                                 LocalDateTime createdAt, LocalDateTime updatedAt) {
+
+        VendorLocation(Vendor vendor) {
+            this(vendor.getId(), vendor.getShopName(), vendor.getDescription(), vendor.getAddress(),
+                    vendor.getLatitude(), vendor.getLongitude(), vendor.getCreatedAt(), vendor.getUpdatedAt());
+        }
+    }
+
+    public record VendorHit(VendorLocation vendor, double distanceKm) {}
+}
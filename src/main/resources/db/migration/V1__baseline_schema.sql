@@ -0,0 +1,150 @@
+-- Schema as previously generated by Hibernate (ddl-auto=update).
+-- Existing databases are baselined at this version and skip it.
+
+CREATE TABLE users (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    email        VARCHAR(255) NOT NULL UNIQUE,
+    phone_number VARCHAR(255) NOT NULL UNIQUE,
+    password     VARCHAR(255) NOT NULL,
+    full_name    VARCHAR(255) NOT NULL,
+    is_active    BOOLEAN,
+    latitude     FLOAT(53),
+    longitude    FLOAT(53),
+    address      VARCHAR(255),
+    created_at   TIMESTAMP(6),
+    updated_at   TIMESTAMP(6)
+);
+
+CREATE TABLE user_roles (
+    user_id BIGINT NOT NULL REFERENCES users (id),
+    role    VARCHAR(255) CHECK (role IN ('CUSTOMER', 'VENDOR', 'ADMIN'))
+);
+
+CREATE TABLE vendors (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id     BIGINT       NOT NULL UNIQUE REFERENCES users (id),
+    shop_name   VARCHAR(255) NOT NULL,
+    description VARCHAR(255),
+    address     VARCHAR(255),
+    latitude    FLOAT(53),
+    longitude   FLOAT(53),
+    is_active   BOOLEAN,
+    created_at  TIMESTAMP(6),
+    updated_at  TIMESTAMP(6)
+);
+
+CREATE TABLE products (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    vendor_id   BIGINT         NOT NULL REFERENCES vendors (id),
+    name        VARCHAR(255)   NOT NULL,
+    description VARCHAR(255),
+    price       NUMERIC(12, 2) NOT NULL,
+    image_url   VARCHAR(255),
+    stock       INTEGER,
+    is_active   BOOLEAN,
+    created_at  TIMESTAMP(6),
+    updated_at  TIMESTAMP(6)
+);
+
+CREATE INDEX idx_products_vendor_id ON products (vendor_id);
+CREATE INDEX idx_products_name ON products (name);
+
+CREATE TABLE carts (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id      BIGINT NOT NULL UNIQUE REFERENCES users (id),
+    vendor_id    BIGINT NOT NULL REFERENCES vendors (id),
+    subtotal     NUMERIC(12, 2),
+    platform_fee NUMERIC(12, 2),
+    delivery_fee NUMERIC(12, 2),
+    total_amount NUMERIC(12, 2),
+    created_at   TIMESTAMP(6),
+    updated_at   TIMESTAMP(6)
+);
+
+CREATE TABLE cart_items (
+    id            BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    cart_id       BIGINT         NOT NULL REFERENCES carts (id),
+    product_id    BIGINT         NOT NULL REFERENCES products (id),
+    quantity      INTEGER        NOT NULL,
+    price_at_time NUMERIC(12, 2) NOT NULL,
+    total_price   NUMERIC(12, 2) NOT NULL,
+    created_at    TIMESTAMP(6)
+);
+
+CREATE TABLE orders (
+    id                      BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    order_number            VARCHAR(255)   NOT NULL UNIQUE,
+    user_id                 BIGINT         NOT NULL REFERENCES users (id),
+    vendor_id               BIGINT         NOT NULL REFERENCES vendors (id),
+    status                  VARCHAR(255)   NOT NULL CHECK (status IN ('PENDING', 'ACCEPTED', 'REJECTED', 'IN_PROGRESS',
+                                                                      'READY', 'OUT_FOR_DELIVERY', 'DELIVERED', 'CANCELLED')),
+    subtotal                NUMERIC(12, 2) NOT NULL,
+    platform_fee            NUMERIC(12, 2) NOT NULL,
+    delivery_fee            NUMERIC(12, 2) NOT NULL,
+    total_amount            NUMERIC(12, 2) NOT NULL,
+    delivery_address        VARCHAR(500)   NOT NULL,
+    delivery_latitude       FLOAT(53),
+    delivery_longitude      FLOAT(53),
+    customer_phone          VARCHAR(15),
+    special_instructions    VARCHAR(500),
+    estimated_delivery_time TIMESTAMP(6),
+    accepted_at             TIMESTAMP(6),
+    rejected_at             TIMESTAMP(6),
+    rejection_reason        VARCHAR(500),
+    delivered_at            TIMESTAMP(6),
+    cancelled_at            TIMESTAMP(6),
+    cancellation_reason     VARCHAR(500),
+    payment_status          VARCHAR(255) CHECK (payment_status IN ('CREATED', 'PENDING', 'SUCCESS', 'FAILED', 'REFUNDED')),
+    created_at              TIMESTAMP(6),
+    updated_at              TIMESTAMP(6)
+);
+
+CREATE INDEX idx_orders_user_id ON orders (user_id);
+CREATE INDEX idx_orders_vendor_id ON orders (vendor_id);
+CREATE INDEX idx_orders_status ON orders (status);
+CREATE INDEX idx_orders_created_at ON orders (created_at);
+
+CREATE TABLE order_items (
+    id                  BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    order_id            BIGINT         NOT NULL REFERENCES orders (id),
+    product_id          BIGINT         NOT NULL REFERENCES products (id),
+    quantity            INTEGER        NOT NULL,
+    price_at_time       NUMERIC(12, 2) NOT NULL,
+    total_price         NUMERIC(12, 2) NOT NULL,
+    product_name        VARCHAR(255)   NOT NULL,
+    product_description VARCHAR(255),
+    product_image_url   VARCHAR(255),
+    created_at          TIMESTAMP(6)
+);
+
+CREATE INDEX idx_order_items_order_id ON order_items (order_id);
+CREATE INDEX idx_order_items_product_id ON order_items (product_id);
+
+CREATE TABLE payments (
+    id                  BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    order_id            BIGINT         NOT NULL UNIQUE REFERENCES orders (id),
+    razorpay_order_id   VARCHAR(255)   NOT NULL UNIQUE,
+    razorpay_payment_id VARCHAR(255) UNIQUE,
+    razorpay_signature  VARCHAR(255),
+    status              VARCHAR(255)   NOT NULL CHECK (status IN ('CREATED', 'PENDING', 'SUCCESS', 'FAILED', 'REFUNDED')),
+    amount              NUMERIC(12, 2) NOT NULL,
+    currency            VARCHAR(3)     NOT NULL,
+    payment_method      VARCHAR(50),
+    bank                VARCHAR(100),
+    wallet              VARCHAR(50),
+    vpa                 VARCHAR(255),
+    card_last4          VARCHAR(4),
+    card_network        VARCHAR(20),
+    failure_reason      VARCHAR(500),
+    refund_id           VARCHAR(255),
+    refund_amount       NUMERIC(12, 2),
+    refunded_at         TIMESTAMP(6),
+    webhook_verified    BOOLEAN,
+    created_at          TIMESTAMP(6),
+    updated_at          TIMESTAMP(6)
+);
+
+CREATE INDEX idx_payments_order_id ON payments (order_id);
+CREATE INDEX idx_payments_razorpay_payment_id ON payments (razorpay_payment_id);
+CREATE INDEX idx_payments_status ON payments (status);
+CREATE INDEX idx_payments_created_at ON payments (created_at);
@@ -0,0 +1,27 @@
+-- Orders and order items moved from IDENTITY to pooled sequences (allocationSize 50) so inserts can be batched.
+-- Each sequence is placed so Hibernate's first block starts right after the highest existing id.
+ALTER TABLE orders ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE order_items ALTER COLUMN id DROP IDENTITY IF EXISTS;
+
+CREATE SEQUENCE IF NOT EXISTS orders_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS order_items_seq START WITH 1 INCREMENT BY 50;
+
+SELECT setval('orders_seq', COALESCE(MAX(id), 0) + 50, false) FROM orders;
+SELECT setval('order_items_seq', COALESCE(MAX(id), 0) + 50, false) FROM order_items;
+
+-- Stock holds placed at checkout
+CREATE TABLE IF NOT EXISTS stock_reservations (
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    order_id   BIGINT       NOT NULL,
+    product_id BIGINT       NOT NULL,
+    quantity   INTEGER      NOT NULL,
+    status     VARCHAR(20)  NOT NULL CHECK (status IN ('HELD', 'CONVERTED', 'RELEASED')),
+    expires_at TIMESTAMP(6) NOT NULL,
+    created_at TIMESTAMP(6),
+    updated_at TIMESTAMP(6)
+);
+
+CREATE INDEX IF NOT EXISTS idx_stock_reservations_order_id ON stock_reservations (order_id);
+
+-- Bounding-box prefilter for location search
+CREATE INDEX IF NOT EXISTS idx_vendors_lat_lon ON vendors (latitude, longitude);
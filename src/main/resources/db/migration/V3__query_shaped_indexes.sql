@@ -0,0 +1,37 @@
+-- Composite and partial indexes matching the repository queries.
+-- Built CONCURRENTLY so live tables keep taking writes; see the .conf file next to this script.
+
+-- orders: customer and vendor listings/feeds filter by owner (and status) and sort by created_at, id
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_orders_user_created_at_id ON orders (user_id, created_at, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_orders_user_status_created_at_id ON orders (user_id, status, created_at, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_orders_vendor_created_at_id ON orders (vendor_id, created_at, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_orders_vendor_status_created_at_id ON orders (vendor_id, status, created_at, id);
+-- findByStatusAndCreatedAtBefore / findByStatusInAndCreatedAtAfter
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_orders_status_created_at ON orders (status, created_at);
+
+-- Leading columns of the composites above
+DROP INDEX CONCURRENTLY IF EXISTS idx_orders_user_id;
+DROP INDEX CONCURRENTLY IF EXISTS idx_orders_vendor_id;
+DROP INDEX CONCURRENTLY IF EXISTS idx_orders_status;
+
+-- payments: razorpay_order_id, razorpay_payment_id and order_id are already covered by their unique constraints
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payments_status_created_at ON payments (status, created_at);
+-- Reconciliation of payments the webhook never confirmed; only a small tail of rows qualifies
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payments_unverified_status ON payments (status, created_at)
+    WHERE webhook_verified = false;
+DROP INDEX CONCURRENTLY IF EXISTS idx_payments_status;
+
+-- products: vendor catalog, active-only storefront
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_products_vendor_active ON products (vendor_id, is_active);
+DROP INDEX CONCURRENTLY IF EXISTS idx_products_vendor_id;
+
+-- carts: carts.user_id is covered by its unique constraint; findByCartAndProduct needs both columns
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_cart_items_cart_product ON cart_items (cart_id, product_id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_carts_vendor_id ON carts (vendor_id);
+
+-- stock_reservations: the sweeper only ever looks at live holds, the purge only at settled ones
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_stock_reservations_held_expires_at ON stock_reservations (expires_at)
+    WHERE status = 'HELD';
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_stock_reservations_settled_updated_at ON stock_reservations (updated_at)
+    WHERE status <> 'HELD';
+DROP INDEX CONCURRENTLY IF EXISTS idx_stock_reservations_status_expires_at;
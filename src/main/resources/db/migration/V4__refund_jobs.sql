@@ -0,0 +1,28 @@
+-- Refunds are queued and confirmed asynchronously; a payment shows REFUND_PENDING until the gateway confirms
+ALTER TABLE payments DROP CONSTRAINT IF EXISTS payments_status_check;
+ALTER TABLE payments ADD CONSTRAINT payments_status_check
+    CHECK (status IN ('CREATED', 'PENDING', 'SUCCESS', 'FAILED', 'REFUND_PENDING', 'REFUNDED'));
+
+ALTER TABLE orders DROP CONSTRAINT IF EXISTS orders_payment_status_check;
+ALTER TABLE orders ADD CONSTRAINT orders_payment_status_check
+    CHECK (payment_status IN ('CREATED', 'PENDING', 'SUCCESS', 'FAILED', 'REFUND_PENDING', 'REFUNDED'));
+
+CREATE TABLE refund_jobs (
+    id                 BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    order_id           BIGINT         NOT NULL,
+    payment_id         BIGINT         NOT NULL UNIQUE,
+    amount             NUMERIC(12, 2) NOT NULL,
+    reason             VARCHAR(500),
+    idempotency_key    VARCHAR(64)    NOT NULL UNIQUE,
+    status             VARCHAR(20)    NOT NULL CHECK (status IN ('PENDING', 'SUBMITTED', 'SUCCEEDED', 'FAILED')),
+    attempts           INTEGER        NOT NULL,
+    next_attempt_at    TIMESTAMP(6)   NOT NULL,
+    razorpay_refund_id VARCHAR(255),
+    last_error         VARCHAR(500),
+    created_at         TIMESTAMP(6),
+    updated_at         TIMESTAMP(6)
+);
+
+CREATE INDEX idx_refund_jobs_order_id ON refund_jobs (order_id);
+-- The worker's claim query; finished jobs drop out of the index
+CREATE INDEX idx_refund_jobs_due ON refund_jobs (next_attempt_at) WHERE status IN ('PENDING', 'SUBMITTED');
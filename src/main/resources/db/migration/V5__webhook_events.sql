@@ -0,0 +1,18 @@
+-- Webhook deliveries are stored on receipt and applied in the background; Razorpay retries dedupe on event_id
+CREATE TABLE webhook_events (
+    id                BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    event_id          VARCHAR(100) NOT NULL UNIQUE,
+    event_type        VARCHAR(100) NOT NULL,
+    razorpay_order_id VARCHAR(255),
+    payload           TEXT         NOT NULL,
+    status            VARCHAR(20)  NOT NULL CHECK (status IN ('RECEIVED', 'PROCESSED', 'FAILED')),
+    attempts          INTEGER      NOT NULL,
+    last_error        VARCHAR(500),
+    received_at       TIMESTAMP(6) NOT NULL,
+    processed_at      TIMESTAMP(6)
+);
+
+-- The processor's queue, oldest first per Razorpay order; applied events drop out of the index
+CREATE INDEX idx_webhook_events_received ON webhook_events (razorpay_order_id, id) WHERE status = 'RECEIVED';
+-- Retention purge
+CREATE INDEX idx_webhook_events_processed_at ON webhook_events (processed_at) WHERE status = 'PROCESSED';
@@ -0,0 +1,21 @@
+-- One row per product in a cart. Bulk adds upsert on (cart_id, product_id), which needs the pair to be unique.
+
+-- Fold any duplicates left by racing adds into the oldest row first
+UPDATE cart_items keep
+SET quantity    = dup.quantity,
+    total_price = keep.price_at_time * dup.quantity
+FROM (SELECT min(id) AS id, sum(quantity) AS quantity
+      FROM cart_items
+      GROUP BY cart_id, product_id
+      HAVING count(*) > 1) dup
+WHERE keep.id = dup.id;
+
+DELETE FROM cart_items i
+USING cart_items keep
+WHERE keep.cart_id = i.cart_id
+  AND keep.product_id = i.product_id
+  AND keep.id < i.id;
+
+-- cart_items is small and short-lived, so a plain build in this transaction is fine
+CREATE UNIQUE INDEX uq_cart_items_cart_product ON cart_items (cart_id, product_id);
+DROP INDEX IF EXISTS idx_cart_items_cart_product;
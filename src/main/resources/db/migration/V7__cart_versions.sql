@@ -0,0 +1,3 @@
+-- Version counters for optimistic locking of carts and their items
+ALTER TABLE carts ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE cart_items ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,116 @@
+package com.locallocket.backend;
+
+import com.locallocket.backend.entity.User;
+import com.locallocket.backend.repository.UserRepository;
+import com.razorpay.RazorpayClient;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Base for tests that run the application against a real PostgreSQL, with the Razorpay client
+ * mocked. One embedded server serves the whole test run, and classes that add the same properties
+ * share a cached context, so tests must not assume the tables hold only their own rows.
+ * <p>
+ * Scheduled jobs are pushed out of the way; tests run the ones they cover by hand. Properties are
+ * kept here where they can be, since every distinct set costs another context; the rest go in
+ * {@code @TestPropertySource} on the subclass.
+ */
+@SpringBootTest(properties = {
+        "refund.worker.poll-interval-ms=3600000",
+        "payment.reconciliation.interval-ms=3600000",
+        "stock.reservation.sweep.interval-ms=3600000",
+        "webhook.processor.poll-interval-ms=3600000",
+        "cart.store.flush-interval-ms=3600000",
+        "stock.reservation.purge.cron=-",
+        "webhook.purge.cron=-",
+        "cart.abandoned.sweep.cron=-",
+        // Small batches and tight limits, so paging and give-up paths show with a handful of rows
+        "refund.retry.base-delay-ms=60000",
+        "refund.retry.max-attempts=3",
+        "payment.reconciliation.chunk-size=2",
+        "payment.reconciliation.max-calls-per-second=1000",
+        "cart.store.max-attempts=50",
+        "cart.abandoned.sweep.batch-size=2",
+        "webhook.processor.max-attempts=3"
+})
+public abstract class IntegrationTest {
+
+    private static final EmbeddedPostgres POSTGRES = startPostgres();
+
+    @MockitoBean
+    protected RazorpayClient razorpayClient;
+
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    protected UserRepository userRepository;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> POSTGRES.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+        registry.add("spring.security.jwt.secret", () -> "01234567890123456789012345678901234567890123456789");
+        registry.add("jwt.secret", () -> "test");
+        registry.add("razorpay.key-id", () -> "key");
+        registry.add("razorpay.key-secret", () -> "secret");
+        registry.add("razorpay.webhook-secret", () -> "webhook");
+    }
+
+    private static EmbeddedPostgres startPostgres() {
+        try {
+            EmbeddedPostgres postgres = EmbeddedPostgres.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    postgres.close();
+                } catch (IOException ignored) {
+                    // The JVM is going away anyway
+                }
+            }));
+            return postgres;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    protected long newUser() {
+        return jdbcTemplate.queryForObject("INSERT INTO users (email, phone_number, password, full_name, is_active) " +
+                "VALUES ('u' || nextval('users_id_seq') || '@test', 'p' || currval('users_id_seq'), 'x', 'User', true) " +
+                "RETURNING id", Long.class);
+    }
+
+    protected User customer() {
+        return userRepository.findById(newUser()).orElseThrow();
+    }
+
+    protected long vendor() {
+        return jdbcTemplate.queryForObject("INSERT INTO vendors (user_id, shop_name, address, latitude, longitude, is_active) " +
+                "VALUES (?, 'Shop', 'addr', 12.9, 77.6, true) RETURNING id", Long.class, newUser());
+    }
+
+    protected long product(long vendorId, int price, int stock) {
+        return jdbcTemplate.queryForObject("INSERT INTO products (vendor_id, name, price, stock, is_active) " +
+                "VALUES (?, 'Product', ?, ?, true) RETURNING id", Long.class, vendorId, price, stock);
+    }
+
+    /**
+     * An order as checkout would leave it, without its payment
+     */
+    protected long order(long userId, long vendorId, String orderStatus, String paymentStatus) {
+        // Order ids are assigned by the application, not the database
+        return jdbcTemplate.queryForObject("INSERT INTO orders (id, order_number, user_id, vendor_id, status, subtotal, " +
+                        "platform_fee, delivery_fee, total_amount, delivery_address, payment_status, created_at) " +
+                        "VALUES (nextval('orders_seq'), 'ORD' || currval('orders_seq'), ?, ?, ?, 100, 10, 10, 120, " +
+                        "'addr', ?, now()) RETURNING id",
+                Long.class, userId, vendorId, orderStatus, paymentStatus);
+    }
+}
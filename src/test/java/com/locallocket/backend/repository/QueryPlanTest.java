@@ -0,0 +1,182 @@
+package com.locallocket.backend.repository;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the Flyway migrations against a real PostgreSQL and checks that the planner picks the
+ * intended index for the shape of each hot repository query.
+ */
+class QueryPlanTest {
+
+    private static EmbeddedPostgres postgres;
+    private static DataSource dataSource;
+
+    @BeforeAll
+    static void migrateAndSeed() throws Exception {
+        postgres = EmbeddedPostgres.start();
+        dataSource = postgres.getPostgresDatabase();
+
+        // Same lock setting as spring.flyway.postgresql.transactional-lock in application.properties
+        Flyway.configure()
+                .dataSource(dataSource)
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false"))
+                .load()
+                .migrate();
+
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO users (email, phone_number, password, full_name, is_active) " +
+                    "SELECT 'user' || i || '@test', 'phone' || i, 'x', 'User ' || i, true FROM generate_series(1, 500) i");
+            statement.execute("INSERT INTO vendors (user_id, shop_name, latitude, longitude, is_active) " +
+                    "SELECT i, 'Shop ' || i, 12.9 + i * 0.001, 77.5 + i * 0.001, true FROM generate_series(1, 50) i");
+            statement.execute("INSERT INTO products (vendor_id, name, price, stock, is_active) " +
+                    "SELECT 1 + i % 50, 'Product ' || i, 10, 100, i % 10 <> 0 FROM generate_series(1, 5000) i");
+            statement.execute("INSERT INTO orders (id, order_number, user_id, vendor_id, status, subtotal, platform_fee, " +
+                    "delivery_fee, total_amount, delivery_address, payment_status, created_at) " +
+                    "SELECT i, 'ORD' || i, 1 + i % 500, 1 + i % 50, " +
+                    "(ARRAY['PENDING','ACCEPTED','DELIVERED','CANCELLED'])[1 + i % 4], 10, 1, 1, 12, 'addr', 'SUCCESS', " +
+                    "TIMESTAMP '2024-01-01' + i * INTERVAL '1 minute' FROM generate_series(1, 50000) i");
+            // A regular customer whose history runs deep on both sides of the feed cursors below
+            statement.execute("INSERT INTO orders (id, order_number, user_id, vendor_id, status, subtotal, platform_fee, " +
+                    "delivery_fee, total_amount, delivery_address, payment_status, created_at) " +
+                    "SELECT i, 'ORD' || i, 42, 1 + i % 50, " +
+                    "(ARRAY['PENDING','ACCEPTED','DELIVERED','CANCELLED'])[1 + i % 4], 10, 1, 1, 12, 'addr', 'SUCCESS', " +
+                    "TIMESTAMP '2024-01-01' + (i - 50000) * INTERVAL '3 minute' FROM generate_series(50001, 70000) i");
+            statement.execute("INSERT INTO payments (order_id, razorpay_order_id, status, amount, currency, " +
+                    "webhook_verified, created_at) " +
+                    "SELECT i, 'order_' || i, CASE i % 20 WHEN 0 THEN 'CREATED' WHEN 1 THEN 'FAILED' ELSE 'SUCCESS' END, " +
+                    "12, 'INR', i % 100 <> 0, " +
+                    "TIMESTAMP '2024-01-01' + i * INTERVAL '1 minute' FROM generate_series(1, 50000) i");
+            statement.execute("INSERT INTO carts (user_id, vendor_id) " +
+                    "SELECT i, 1 + i % 50 FROM generate_series(1, 500) i");
+            statement.execute("INSERT INTO cart_items (cart_id, product_id, quantity, price_at_time, total_price) " +
+                    "SELECT 1 + i % 500, 1 + i % 5000, 1, 10, 10 FROM generate_series(1, 5000) i");
+            statement.execute("INSERT INTO stock_reservations (order_id, product_id, quantity, status, expires_at, " +
+                    "created_at, updated_at) " +
+                    "SELECT i, 1 + i % 5000, 1, CASE WHEN i % 50 = 0 THEN 'HELD' ELSE 'RELEASED' END, " +
+                    "TIMESTAMP '2024-01-01' + i * INTERVAL '1 minute', now(), now() FROM generate_series(1, 50000) i");
+            statement.execute("ANALYZE");
+        }
+    }
+
+    @AfterAll
+    static void stop() throws Exception {
+        if (postgres != null) {
+            postgres.close();
+        }
+    }
+
+    @Test
+    void vendorOrdersByStatusUseVendorStatusIndex() throws SQLException {
+        assertThat(plan("SELECT * FROM orders o WHERE o.vendor_id = 7 AND o.status = 'PENDING' " +
+                "ORDER BY o.created_at DESC LIMIT 20"))
+                .contains("idx_orders_vendor_status_created_at_id");
+    }
+
+    @Test
+    void orderFeedsRangeScanFromTheCursor() throws SQLException {
+        // A cursor deep into the feed: most of the vendor's and user's orders are newer and must not be read
+        String keyset = "AND o.created_at <= TIMESTAMP '2024-01-30' " +
+                "AND (o.created_at < TIMESTAMP '2024-01-30' OR o.id < 40000) " +
+                "ORDER BY o.created_at DESC, o.id DESC LIMIT 21";
+
+        assertKeysetScan(plan("SELECT * FROM orders o WHERE o.vendor_id = 7 " + keyset),
+                "idx_orders_vendor_created_at_id");
+        assertKeysetScan(plan("SELECT * FROM orders o WHERE o.vendor_id = 7 AND o.status = 'PENDING' " + keyset),
+                "idx_orders_vendor_status_created_at_id");
+        assertKeysetScan(plan("SELECT * FROM orders o WHERE o.user_id = 42 " + keyset),
+                "idx_orders_user_created_at_id");
+        assertKeysetScan(plan("SELECT * FROM orders o WHERE o.user_id = 42 AND o.status = 'DELIVERED' " + keyset),
+                "idx_orders_user_status_created_at_id");
+    }
+
+    @Test
+    void customerOrdersUseUserIndex() throws SQLException {
+        assertThat(plan("SELECT * FROM orders o WHERE o.user_id = 42 ORDER BY o.created_at DESC LIMIT 20"))
+                .contains("idx_orders_user_created_at_id");
+        assertThat(plan("SELECT * FROM orders o WHERE o.user_id = 42 AND o.status = 'DELIVERED' " +
+                "ORDER BY o.created_at DESC LIMIT 20"))
+                .contains("idx_orders_user_status_created_at_id");
+    }
+
+    @Test
+    void vendorStatusCountUsesVendorStatusIndex() throws SQLException {
+        assertThat(plan("SELECT count(*) FROM orders o WHERE o.vendor_id = 7 AND o.status = 'PENDING'"))
+                .contains("idx_orders_vendor_status_created_at_id");
+    }
+
+    @Test
+    void paymentLookupsUseIndexes() throws SQLException {
+        assertThat(plan("SELECT * FROM payments p WHERE p.razorpay_order_id = 'order_123'"))
+                .contains("payments_razorpay_order_id_key");
+        assertThat(plan("SELECT * FROM payments p WHERE p.status = 'CREATED' " +
+                "AND p.created_at < TIMESTAMP '2024-01-20'"))
+                .contains("idx_payments_status_created_at");
+        assertThat(plan("SELECT * FROM payments p WHERE p.webhook_verified = false " +
+                "AND p.status IN ('CREATED', 'PENDING', 'SUCCESS')"))
+                .contains("idx_payments_unverified_status");
+    }
+
+    @Test
+    void activeVendorProductsUseVendorActiveIndex() throws SQLException {
+        assertThat(plan("SELECT * FROM products p WHERE p.vendor_id = 7 AND p.is_active = true LIMIT 20"))
+                .contains("idx_products_vendor_active");
+    }
+
+    @Test
+    void cartItemLookupUsesCartProductIndex() throws SQLException {
+        assertThat(plan("SELECT * FROM cart_items ci WHERE ci.cart_id = 1 AND ci.product_id = 2"))
+                .contains("uq_cart_items_cart_product");
+    }
+
+    @Test
+    void cartSummaryUsesUserAndCartIndexes() throws SQLException {
+        String plan = plan("SELECT c.id, c.vendor_id, count(i.id), coalesce(sum(i.quantity), 0), c.total_amount " +
+                "FROM carts c LEFT JOIN cart_items i ON c.id = i.cart_id WHERE c.user_id = 42 " +
+                "GROUP BY c.id, c.vendor_id, c.total_amount");
+        assertThat(plan).contains("carts_user_id_key");
+        assertThat(plan).contains("uq_cart_items_cart_product");
+    }
+
+    @Test
+    void reservationSweepUsesPartialHeldIndex() throws SQLException {
+        assertThat(plan("SELECT r.order_id FROM stock_reservations r " +
+                "WHERE r.status = 'HELD' AND r.expires_at < TIMESTAMP '2024-01-10' " +
+                "GROUP BY r.order_id ORDER BY min(r.expires_at) LIMIT 200"))
+                .contains("idx_stock_reservations_held_expires_at");
+    }
+
+    /**
+     * The index must bound created_at itself and hand rows over already in feed order. Only naming
+     * the index would also pass when it serves just the leading columns and the rest is filtered.
+     */
+    private static void assertKeysetScan(String plan, String index) {
+        assertThat(plan).contains(index);
+        assertThat(plan).containsPattern("Index Cond: .*created_at <=");
+        assertThat(plan).doesNotContain("Sort").doesNotContain("BitmapOr");
+    }
+
+    private static String plan(String sql) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            try (ResultSet rows = statement.executeQuery("EXPLAIN " + sql)) {
+                while (rows.next()) {
+                    plan.append(rows.getString(1)).append('\n');
+                }
+            }
+        }
+        return plan.toString();
+    }
+}
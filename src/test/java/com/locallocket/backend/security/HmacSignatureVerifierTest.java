@@ -0,0 +1,79 @@
+package com.locallocket.backend.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Signature checks against fixed vectors: RFC 4231 test case 2, and a checkout signature in
+ * Razorpay's {@code order_id|payment_id} form computed outside this code base.
+ */
+class HmacSignatureVerifierTest {
+
+    private static final String RFC_4231_SIGNATURE = "5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843";
+
+    private static final String KEY_SECRET = "rzp_test_secret";
+    private static final String ORDER_ID = "order_IEIaMR65cu6nz3";
+    private static final String PAYMENT_ID = "pay_IH4NVgf4Dreq1l";
+    private static final String CHECKOUT_SIGNATURE = "1e371aca6da6d519dc3e2773cc8ca6560e73667ca6da2e96e8f0a87e4cf35cad";
+
+    @Test
+    void acceptsKnownVectors() {
+        assertThat(new HmacSignatureVerifier("Jefe", 2).verify("what do ya want for nothing?", RFC_4231_SIGNATURE))
+                .isTrue();
+        assertThat(new HmacSignatureVerifier(KEY_SECRET, 2).verify(ORDER_ID + "|" + PAYMENT_ID, CHECKOUT_SIGNATURE))
+                .isTrue();
+        // Hex case is not significant
+        assertThat(new HmacSignatureVerifier("Jefe", 2)
+                .verify("what do ya want for nothing?", RFC_4231_SIGNATURE.toUpperCase())).isTrue();
+    }
+
+    @Test
+    void rejectsWrongSecretOrMessage() {
+        assertThat(new HmacSignatureVerifier("jefe", 2).verify("what do ya want for nothing?", RFC_4231_SIGNATURE))
+                .isFalse();
+        assertThat(new HmacSignatureVerifier("Jefe", 2).verify("what do ya want for nothing!", RFC_4231_SIGNATURE))
+                .isFalse();
+    }
+
+    @Test
+    void rejectsMalformedSignatures() {
+        HmacSignatureVerifier verifier = new HmacSignatureVerifier("Jefe", 2);
+        String message = "what do ya want for nothing?";
+
+        assertThat(verifier.verify(message, RFC_4231_SIGNATURE.substring(2))).isFalse();
+        assertThat(verifier.verify(message, RFC_4231_SIGNATURE + "00")).isFalse();
+        assertThat(verifier.verify(message, "")).isFalse();
+        assertThat(verifier.verify(message, "zz" + RFC_4231_SIGNATURE.substring(2))).isFalse();
+    }
+
+    @Test
+    void rejectsNullInput() {
+        HmacSignatureVerifier verifier = new HmacSignatureVerifier("Jefe", 2);
+
+        assertThat(verifier.verify((String) null, RFC_4231_SIGNATURE)).isFalse();
+        assertThat(verifier.verify("what do ya want for nothing?", null)).isFalse();
+    }
+
+    @Test
+    void staysCorrectOnceThePoolIsExhausted() {
+        HmacSignatureVerifier verifier = new HmacSignatureVerifier("Jefe", 1);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(verifier.verify("what do ya want for nothing?", RFC_4231_SIGNATURE)).isTrue();
+            assertThat(verifier.verify("something else", RFC_4231_SIGNATURE)).isFalse();
+        }
+    }
+
+    @Test
+    void checkoutSignaturesUseTheKeySecretAndWebhooksTheWebhookSecret() {
+        RazorpaySignatureVerifier verifier = new RazorpaySignatureVerifier(KEY_SECRET, "Jefe", 2);
+
+        assertThat(verifier.verifyPayment(ORDER_ID, PAYMENT_ID, CHECKOUT_SIGNATURE)).isTrue();
+        assertThat(verifier.verifyWebhook(ORDER_ID + "|" + PAYMENT_ID, CHECKOUT_SIGNATURE)).isFalse();
+
+        assertThat(verifier.verifyWebhook("what do ya want for nothing?", RFC_4231_SIGNATURE)).isTrue();
+        assertThat(new RazorpaySignatureVerifier("Jefe", KEY_SECRET, 2)
+                .verifyPayment(ORDER_ID, PAYMENT_ID, CHECKOUT_SIGNATURE)).isFalse();
+    }
+}
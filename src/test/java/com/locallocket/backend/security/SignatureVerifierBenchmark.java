@@ -0,0 +1,93 @@
+package com.locallocket.backend.security;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Webhook signature check as it was (new Mac per call, String.format hex, String.equals) against
+ * {@link HmacSignatureVerifier}. Run {@link #main} from the IDE, or after {@code mvn test-compile}:
+ * <pre>
+ * java -cp target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *     org.openjdk.jmh.Main SignatureVerifierBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignatureVerifierBenchmark {
+
+    private static final String SECRET = "whsec_benchmark_secret";
+
+    // Roughly the size of a payment.captured delivery
+    @Param({"1500"})
+    private int payloadSize;
+
+    private String payload;
+    private String signature;
+    private HmacSignatureVerifier verifier;
+
+    @Setup
+    public void setUp() throws Exception {
+        payload = "{\"event\":\"payment.captured\",\"payload\":\"" + "x".repeat(payloadSize) + "\"}";
+        signature = HexFormat.of().formatHex(newMac().doFinal(payload.getBytes(StandardCharsets.UTF_8)));
+        verifier = new HmacSignatureVerifier(SECRET, 32);
+
+        if (!legacyVerify() || !verifier.verify(payload, signature)) {
+            throw new IllegalStateException("Signature does not verify");
+        }
+    }
+
+    @Benchmark
+    public boolean legacy() throws Exception {
+        return legacyVerify();
+    }
+
+    @Benchmark
+    public boolean pooled() {
+        return verifier.verify(payload, signature);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean legacyContended() throws Exception {
+        return legacyVerify();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean pooledContended() {
+        return verifier.verify(payload, signature);
+    }
+
+    private boolean legacyVerify() throws Exception {
+        byte[] computedHash = newMac().doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        StringBuilder result = new StringBuilder();
+        for (byte b : computedHash) {
+            result.append(String.format("%02x", b));
+        }
+        return result.toString().equals(signature);
+    }
+
+    private static Mac newMac() throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return mac;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SignatureVerifierBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,80 @@
+package com.locallocket.backend.service;
+
+import com.locallocket.backend.IntegrationTest;
+import com.locallocket.backend.dto.cart.AddToCartRequest;
+import com.locallocket.backend.entity.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Abandoned carts deleted in small batches against a real PostgreSQL, alongside carts held by the
+ * in-memory store. Sweeps and write-back are run by hand.
+ */
+@TestPropertySource(properties = "cart.store.type=memory")
+class AbandonedCartSweeperTest extends IntegrationTest {
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private AbandonedCartSweeper sweeper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private InMemoryCartStore cartStore;
+
+    @Test
+    void abandonedCartsAreDeletedInBatches() {
+        long vendorId = vendor();
+        long milk = product(vendorId, 30, 100);
+        long bread = product(vendorId, 40, 100);
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            User user = customer();
+            cartService.addToCart(user, new AddToCartRequest(milk, 1));
+            cartService.addToCart(user, new AddToCartRequest(bread, 1));
+            users.add(user);
+        }
+        cartStore.flushAll();
+
+        // The first five were last changed long ago; the last one is still in use
+        for (User user : users.subList(0, 5)) {
+            jdbcTemplate.update("UPDATE carts SET updated_at = now() - INTERVAL '40 days' WHERE user_id = ?", user.getId());
+        }
+        // Changed again in memory but not written back yet, so it looks abandoned in the database
+        User returning = users.get(0);
+        cartService.addToCart(returning, new AddToCartRequest(milk, 1));
+
+        sweeper.sweep();
+
+        assertThat(meterRegistry.counter("cart.sweep.carts.deleted").count()).isEqualTo(5.0);
+        assertThat(meterRegistry.counter("cart.sweep.items.deleted").count()).isEqualTo(10.0);
+        assertThat(meterRegistry.timer("cart.sweep.batch.duration").count()).isEqualTo(3);
+        assertThat(meterRegistry.timer("cart.sweep.duration").count()).isEqualTo(1);
+        assertThat(storedQuantity(users.get(5), milk)).isEqualTo(1);
+
+        // Held copies of the deleted carts are gone too, except the one with changes still to write
+        assertThat(cartService.getCart(users.get(1))).isNull();
+        assertThat(cartService.getCart(returning).getTotalItems()).isEqualTo(3);
+        cartStore.flushAll();
+        assertThat(storedQuantity(returning, milk)).isEqualTo(2);
+        for (User user : users.subList(1, 5)) {
+            assertThat(storedQuantity(user, milk)).isNull();
+        }
+    }
+
+    private Integer storedQuantity(User user, long productId) {
+        return jdbcTemplate.query("SELECT i.quantity FROM cart_items i JOIN carts c ON c.id = i.cart_id " +
+                        "WHERE c.user_id = ? AND i.product_id = ?",
+                rs -> rs.next() ? rs.getInt(1) : null, user.getId(), productId);
+    }
+}
@@ -0,0 +1,132 @@
+package com.locallocket.backend.service;
+
+import com.locallocket.backend.IntegrationTest;
+import com.locallocket.backend.controller.IdempotencyCache;
+import com.locallocket.backend.dto.cart.AddToCartRequest;
+import com.locallocket.backend.dto.cart.CartResponse;
+import com.locallocket.backend.dto.cart.CartSummaryResponse;
+import com.locallocket.backend.entity.User;
+import com.locallocket.backend.exception.IdempotencyKeyReusedException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Concurrent changes to one cart written straight through to a real PostgreSQL: none fail and none
+ * are lost, and a repeated request with the same idempotency key is applied once, while a key reused
+ * for a different request is refused.
+ */
+class DatabaseCartStoreTest extends IntegrationTest {
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private IdempotencyCache idempotencyCache;
+
+    @Test
+    void concurrentAddsAreAllApplied() throws Exception {
+        long vendorId = vendor();
+        long milk = product(vendorId, 30, 100);
+        long bread = product(vendorId, 40, 100);
+        User user = customer();
+
+        // The first adds race to create the cart as well
+        int requests = 16;
+        runTogether(requests, i -> cartService.addToCart(user, new AddToCartRequest(i % 2 == 0 ? milk : bread, 1)));
+
+        assertThat(storedQuantity(user, milk)).isEqualTo(requests / 2);
+        assertThat(storedQuantity(user, bread)).isEqualTo(requests / 2);
+        assertThat(jdbcTemplate.queryForObject("SELECT subtotal FROM carts WHERE user_id = ?", Integer.class, user.getId()))
+                .isEqualTo(requests / 2 * 70);
+        assertThat(jdbcTemplate.queryForObject("SELECT version FROM carts WHERE user_id = ?", Long.class, user.getId()))
+                .isEqualTo(requests - 1);
+
+        CartSummaryResponse summary = cartService.getCartSummary(user);
+        assertThat(summary.itemCount()).isEqualTo(2);
+        assertThat(summary.totalItems()).isEqualTo(requests);
+        assertThat(summary.vendorId()).isEqualTo(vendorId);
+    }
+
+    @Test
+    void repeatsWithTheSameKeyAreAppliedOnce() throws Exception {
+        long vendorId = vendor();
+        long milk = product(vendorId, 30, 100);
+        User user = customer();
+        AtomicInteger replayed = new AtomicInteger();
+
+        runTogether(8, i -> {
+            AddToCartRequest request = new AddToCartRequest(milk, 1);
+            ResponseEntity<CartResponse> response = idempotencyCache.execute(user, "add", "tap-1", request, () ->
+                    ResponseEntity.ok(cartService.addToCart(user, request)));
+            assertThat(response.getBody().getTotalItems()).isEqualTo(1);
+            if (response.getHeaders().containsKey(IdempotencyCache.REPLAYED_HEADER)) {
+                replayed.incrementAndGet();
+            }
+        });
+        assertThat(replayed).hasValue(7);
+        assertThat(storedQuantity(user, milk)).isEqualTo(1);
+
+        // A new key is a new request
+        AddToCartRequest another = new AddToCartRequest(milk, 1);
+        idempotencyCache.execute(user, "add", "tap-2", another, () ->
+                ResponseEntity.ok(cartService.addToCart(user, another)));
+        assertThat(storedQuantity(user, milk)).isEqualTo(2);
+    }
+
+    @Test
+    void aKeyReusedForADifferentRequestIsRejected() {
+        long vendorId = vendor();
+        long milk = product(vendorId, 30, 100);
+        User user = customer();
+
+        AddToCartRequest first = new AddToCartRequest(milk, 1);
+        idempotencyCache.execute(user, "add", "tap-1", first, () ->
+                ResponseEntity.ok(cartService.addToCart(user, first)));
+
+        AddToCartRequest different = new AddToCartRequest(milk, 5);
+        assertThatThrownBy(() -> idempotencyCache.execute(user, "add", "tap-1", different, () ->
+                ResponseEntity.ok(cartService.addToCart(user, different))))
+                .isInstanceOf(IdempotencyKeyReusedException.class);
+        assertThat(storedQuantity(user, milk)).isEqualTo(1);
+    }
+
+    private void runTogether(int count, IntConsumer request) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<Void>> running = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(count)) {
+            for (int i = 0; i < count; i++) {
+                int index = i;
+                running.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    request.accept(index);
+                }, executor));
+            }
+            start.countDown();
+            CompletableFuture.allOf(running.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+        }
+    }
+
+    private Integer storedQuantity(User user, long productId) {
+        return jdbcTemplate.query("SELECT i.quantity FROM cart_items i JOIN carts c ON c.id = i.cart_id " +
+                        "WHERE c.user_id = ? AND i.product_id = ?",
+                rs -> rs.next() ? rs.getInt(1) : null, user.getId(), productId);
+    }
+}
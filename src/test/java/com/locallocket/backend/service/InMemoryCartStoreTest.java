@@ -0,0 +1,141 @@
+package com.locallocket.backend.service;
+
+import com.locallocket.backend.IntegrationTest;
+import com.locallocket.backend.dto.cart.AddMultipleProductsRequest;
+import com.locallocket.backend.dto.cart.AddToCartRequest;
+import com.locallocket.backend.dto.cart.CartResponse;
+import com.locallocket.backend.dto.cart.UpdateCartItemRequest;
+import com.locallocket.backend.dto.order.CreateOrderRequest;
+import com.locallocket.backend.entity.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Cart changes against the in-memory store, with write-back run by hand against a real PostgreSQL.
+ * The write-back schedule is pushed out of the way.
+ */
+@TestPropertySource(properties = "cart.store.type=memory")
+class InMemoryCartStoreTest extends IntegrationTest {
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private InMemoryCartStore cartStore;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void changesAreWrittenBehindInOneGo() {
+        long vendorId = vendor();
+        long milk = product(vendorId, 30, 10);
+        long bread = product(vendorId, 40, 10);
+        User user = customer();
+
+        cartService.addMultipleProductsToCart(user, new AddMultipleProductsRequest(List.of(
+                new AddMultipleProductsRequest.ProductItem(milk, 2),
+                new AddMultipleProductsRequest.ProductItem(bread, 1))));
+        CartResponse cart = cartService.addToCart(user, new AddToCartRequest(milk, 1));
+        Long breadItemId = cart.getItems().stream()
+                .filter(item -> item.getProductId().equals(bread)).findFirst().orElseThrow().getId();
+        cart = cartService.updateCartItem(user, breadItemId, new UpdateCartItemRequest(4));
+
+        assertThat(cart.getTotalItems()).isEqualTo(7);
+        assertThat(storedQuantity(user, milk)).isNull();
+        assertThat(cartService.getCartSummary(user).totalItems()).isEqualTo(7);
+
+        cartStore.flushAll();
+
+        assertThat(storedQuantity(user, milk)).isEqualTo(3);
+        assertThat(storedQuantity(user, bread)).isEqualTo(4);
+        assertThat(jdbcTemplate.queryForObject("SELECT id FROM cart_items WHERE product_id = ?", Long.class, bread))
+                .isEqualTo(breadItemId);
+        assertThat(jdbcTemplate.queryForObject("SELECT subtotal FROM carts WHERE user_id = ?", Integer.class, user.getId()))
+                .isEqualTo(250);
+
+        cartService.removeCartItem(user, breadItemId);
+        cartStore.flushAll();
+        assertThat(storedQuantity(user, bread)).isNull();
+        assertThat(storedQuantity(user, milk)).isEqualTo(3);
+    }
+
+    @Test
+    void checkoutSeesACartNotWrittenBackYet() {
+        long vendorId = vendor();
+        long milk = product(vendorId, 30, 10);
+        User user = customer();
+
+        cartService.addToCart(user, new AddToCartRequest(milk, 2));
+
+        CreateOrderRequest request = new CreateOrderRequest();
+        request.setDeliveryAddress("home");
+        request.setCustomerPhone("9999999999");
+        request.setDeliveryLatitude(12.9);
+        request.setDeliveryLongitude(77.6);
+        assertThat(orderService.createOrderFromCart(user, request).getItems()).hasSize(1);
+
+        assertThat(cartService.getCart(user)).isNull();
+        cartStore.flushAll();
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM carts WHERE user_id = ?", Integer.class, user.getId()))
+                .isZero();
+    }
+
+    @Test
+    void cartBeingCheckedOutIsNotWrittenBack() {
+        long vendorId = vendor();
+        long milk = product(vendorId, 30, 10);
+        User user = customer();
+        cartService.addToCart(user, new AddToCartRequest(milk, 2));
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            // As checkout does: flush, read and delete the cart, evict once committed
+            cartStore.flush(user);
+            jdbcTemplate.update("DELETE FROM cart_items WHERE cart_id = (SELECT id FROM carts WHERE user_id = ?)", user.getId());
+            jdbcTemplate.update("DELETE FROM carts WHERE user_id = ?", user.getId());
+            cartService.addToCart(user, new AddToCartRequest(milk, 1));
+            cartStore.flushAll();
+            cartStore.evict(user);
+        });
+        cartStore.flushAll();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM carts WHERE user_id = ?", Integer.class, user.getId()))
+                .isZero();
+        assertThat(cartService.getCart(user)).isNull();
+    }
+
+    @Test
+    void cartNeedingMoreIdsThanABlockHoldsGetsThemAll() {
+        long vendorId = vendor();
+        List<AddMultipleProductsRequest.ProductItem> items = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            items.add(new AddMultipleProductsRequest.ProductItem(product(vendorId, 10, 10), 1));
+        }
+        User user = customer();
+
+        CartResponse cart = cartService.addMultipleProductsToCart(user, new AddMultipleProductsRequest(items));
+
+        assertThat(cart.getItems()).hasSize(250);
+        assertThat(cart.getItems()).extracting(item -> item.getId()).doesNotContainNull().doesNotHaveDuplicates();
+        cartStore.flushAll();
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM cart_items i JOIN carts c ON c.id = i.cart_id " +
+                "WHERE c.user_id = ?", Integer.class, user.getId())).isEqualTo(250);
+    }
+
+    private Integer storedQuantity(User user, long productId) {
+        return jdbcTemplate.query("SELECT i.quantity FROM cart_items i JOIN carts c ON c.id = i.cart_id " +
+                        "WHERE c.user_id = ? AND i.product_id = ?",
+                rs -> rs.next() ? rs.getInt(1) : null, user.getId(), productId);
+    }
+}
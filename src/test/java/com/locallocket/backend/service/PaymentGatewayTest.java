@@ -0,0 +1,136 @@
+package com.locallocket.backend.service;
+
+import com.locallocket.backend.IntegrationTest;
+import com.locallocket.backend.exception.GatewayTimeoutException;
+import com.locallocket.backend.exception.GatewayUnavailableException;
+import com.razorpay.PaymentClient;
+import com.razorpay.RazorpayException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Timeouts, bulkhead and circuit breaker around the gateway, with the Razorpay client stubbed out.
+ * Each test gets a fresh context so the breaker starts closed.
+ */
+@TestPropertySource(properties = {
+        "payment.gateway.timeout.fetch-ms=200",
+        "payment.gateway.bulkhead.max-concurrent-calls=2",
+        "payment.gateway.bulkhead.max-wait-ms=0",
+        "payment.gateway.circuit-breaker.window-size=4",
+        "payment.gateway.circuit-breaker.minimum-calls=4",
+        "payment.gateway.circuit-breaker.failure-rate-threshold=50",
+        "payment.gateway.circuit-breaker.open-ms=300",
+        "payment.gateway.circuit-breaker.half-open-calls=1"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class PaymentGatewayTest extends IntegrationTest {
+
+    @Autowired
+    private PaymentGateway paymentGateway;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private PaymentClient payments;
+
+    @BeforeEach
+    void stubGateway() {
+        payments = mock(PaymentClient.class);
+        razorpayClient.payments = payments;
+    }
+
+    @Test
+    void slowCallsTimeOutAndFreeTheirSlot() throws Exception {
+        when(payments.fetch(anyString())).thenAnswer(invocation -> {
+            Thread.sleep(5_000);
+            return null;
+        });
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> paymentGateway.fetchPayment("pay_slow")).isInstanceOf(GatewayTimeoutException.class);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(2_000);
+
+        // The abandoned call was interrupted, so it no longer holds a bulkhead slot
+        Thread.sleep(100);
+        assertThat(meterRegistry.get("payment.gateway.bulkhead.in-flight").gauge().value()).isZero();
+    }
+
+    @Test
+    void fullBulkheadTurnsCallsAway() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch entered = new CountDownLatch(2);
+        when(payments.fetch(anyString())).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await();
+            return null;
+        });
+
+        CompletableFuture<?> first = CompletableFuture.runAsync(() -> fetchQuietly("pay_1"));
+        CompletableFuture<?> second = CompletableFuture.runAsync(() -> fetchQuietly("pay_2"));
+        assertThat(entered.await(1, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> paymentGateway.fetchPayment("pay_3")).isInstanceOf(GatewayUnavailableException.class);
+        assertThat(meterRegistry.counter("payment.gateway.rejected", "operation", "fetch_payment", "reason", "bulkhead_full")
+                .count()).isEqualTo(1.0);
+
+        release.countDown();
+        CompletableFuture.allOf(first, second).get(1, TimeUnit.SECONDS);
+        verify(payments, times(2)).fetch(anyString());
+    }
+
+    @Test
+    void circuitOpensOnFailuresAndClosesAfterASuccessfulTrial() throws Exception {
+        when(payments.fetch(anyString())).thenThrow(new RazorpayException("SERVER_ERROR:Gateway unavailable"));
+
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> paymentGateway.fetchPayment("pay_down")).isInstanceOf(RazorpayException.class);
+        }
+        assertThat(paymentGateway.isAvailable()).isFalse();
+        assertThat(meterRegistry.get("payment.gateway.circuit.state").gauge().value()).isEqualTo(2.0);
+
+        // Turned away without reaching the gateway
+        assertThatThrownBy(() -> paymentGateway.fetchPayment("pay_down")).isInstanceOf(GatewayUnavailableException.class);
+        assertThatThrownBy(() -> paymentGateway.requireAvailable()).isInstanceOf(GatewayUnavailableException.class);
+        verify(payments, times(4)).fetch(anyString());
+
+        Thread.sleep(350);
+        assertThat(paymentGateway.isAvailable()).isTrue();
+        stubGateway();
+        paymentGateway.fetchPayment("pay_up");
+        assertThat(meterRegistry.get("payment.gateway.circuit.state").gauge().value()).isZero();
+    }
+
+    @Test
+    void rejectedRequestsDoNotOpenTheCircuit() throws Exception {
+        when(payments.fetch(anyString())).thenThrow(new RazorpayException("BAD_REQUEST_ERROR:The id provided does not exist"));
+
+        for (int i = 0; i < 6; i++) {
+            assertThatThrownBy(() -> paymentGateway.fetchPayment("pay_missing")).isInstanceOf(RazorpayException.class);
+        }
+        assertThat(paymentGateway.isAvailable()).isTrue();
+    }
+
+    private void fetchQuietly(String razorpayPaymentId) {
+        try {
+            paymentGateway.fetchPayment(razorpayPaymentId);
+        } catch (RazorpayException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
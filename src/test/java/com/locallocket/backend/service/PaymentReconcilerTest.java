@@ -0,0 +1,120 @@
+package com.locallocket.backend.service;
+
+import com.locallocket.backend.IntegrationTest;
+import com.razorpay.OrderClient;
+import com.razorpay.Payment;
+import com.razorpay.RazorpayException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the reconciliation job against a real PostgreSQL with the Razorpay client stubbed out.
+ * The job is run by hand; its schedule is pushed out of the way.
+ */
+class PaymentReconcilerTest extends IntegrationTest {
+
+    @Autowired
+    private PaymentReconciler paymentReconciler;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private OrderClient orders;
+
+    @BeforeEach
+    void stubGateway() {
+        orders = mock(OrderClient.class);
+        razorpayClient.orders = orders;
+    }
+
+    @Test
+    void staleChunksAreBroughtInLineWithTheGateway() throws Exception {
+        long captured = order("PENDING", "CREATED", 60);
+        long failed = order("PENDING", "PENDING", 60);
+        long abandoned = order("CANCELLED", "CREATED", 60);
+        long unpaid = order("PENDING", "CREATED", 60);
+        long fresh = order("PENDING", "CREATED", 5);
+
+        when(orders.fetchPayments("order_" + captured)).thenReturn(List.of(
+                gatewayPayment("pay_a" + captured, "failed"),
+                gatewayPayment("pay_b" + captured, "captured")));
+        when(orders.fetchPayments("order_" + failed)).thenReturn(List.of(
+                gatewayPayment("pay_a" + failed, "failed")));
+        double before = drift("CREATED", "SUCCESS");
+
+        paymentReconciler.reconcile();
+
+        assertThat(paymentStatus(captured)).isEqualTo("SUCCESS");
+        assertThat(orderPaymentStatus(captured)).isEqualTo("SUCCESS");
+        assertThat(jdbcTemplate.queryForObject("SELECT razorpay_payment_id FROM payments WHERE order_id = ?",
+                String.class, captured)).isEqualTo("pay_b" + captured);
+
+        assertThat(paymentStatus(failed)).isEqualTo("FAILED");
+        assertThat(orderPaymentStatus(failed)).isEqualTo("FAILED");
+
+        assertThat(paymentStatus(abandoned)).isEqualTo("FAILED");
+        assertThat(jdbcTemplate.queryForObject("SELECT failure_reason FROM payments WHERE order_id = ?",
+                String.class, abandoned)).isEqualTo("Checkout abandoned");
+
+        // Nothing at the gateway yet and the order is still open: the sweeper decides, not the reconciler
+        assertThat(paymentStatus(unpaid)).isEqualTo("CREATED");
+
+        assertThat(paymentStatus(fresh)).isEqualTo("CREATED");
+        verify(orders, never()).fetchPayments("order_" + fresh);
+
+        assertThat(drift("CREATED", "SUCCESS") - before).isEqualTo(1.0);
+    }
+
+    @Test
+    void gatewayErrorsLeaveThePaymentForTheNextRun() throws Exception {
+        long orderId = order("PENDING", "CREATED", 60);
+        when(orders.fetchPayments(anyString())).thenThrow(new RazorpayException("gateway down"));
+        double errors = meterRegistry.counter("payment.reconciliation.errors").count();
+
+        paymentReconciler.reconcile();
+
+        assertThat(paymentStatus(orderId)).isEqualTo("CREATED");
+        assertThat(meterRegistry.counter("payment.reconciliation.errors").count()).isGreaterThan(errors);
+    }
+
+    private long order(String orderStatus, String paymentStatus, int minutesAgo) {
+        long orderId = order(newUser(), vendor(), orderStatus, paymentStatus);
+        jdbcTemplate.update("INSERT INTO payments (order_id, razorpay_order_id, status, amount, currency, " +
+                "webhook_verified, created_at) VALUES (?, 'order_' || ?, ?, 120, 'INR', false, now() - make_interval(mins => ?))",
+                orderId, orderId, paymentStatus, minutesAgo);
+        return orderId;
+    }
+
+    private double drift(String from, String to) {
+        return meterRegistry.counter("payment.reconciliation.drift", "from", from, "to", to).count();
+    }
+
+    private String paymentStatus(long orderId) {
+        return jdbcTemplate.queryForObject("SELECT status FROM payments WHERE order_id = ?", String.class, orderId);
+    }
+
+    private String orderPaymentStatus(long orderId) {
+        return jdbcTemplate.queryForObject("SELECT payment_status FROM orders WHERE id = ?", String.class, orderId);
+    }
+
+    private static Payment gatewayPayment(String id, String status) {
+        JSONObject json = new JSONObject();
+        json.put("id", id);
+        json.put("entity", "payment");
+        json.put("status", status);
+        json.put("error_description", "failed".equals(status) ? "Card declined" : JSONObject.NULL);
+        return new Payment(json);
+    }
+}
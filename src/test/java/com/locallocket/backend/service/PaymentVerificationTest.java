@@ -0,0 +1,118 @@
+package com.locallocket.backend.service;
+
+import com.locallocket.backend.IntegrationTest;
+import com.locallocket.backend.dto.payment.VerifyPaymentRequest;
+import com.locallocket.backend.exception.PaymentException;
+import com.razorpay.Payment;
+import com.razorpay.PaymentClient;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checkout verification against a real PostgreSQL, with the gateway's view of the payment stubbed.
+ * Signatures are made with the test key secret.
+ */
+class PaymentVerificationTest extends IntegrationTest {
+
+    private static final String KEY_SECRET = "secret";
+
+    @Autowired
+    private PaymentService paymentService;
+
+    private PaymentClient payments;
+
+    @BeforeEach
+    void stubGateway() {
+        payments = mock(PaymentClient.class);
+        razorpayClient.payments = payments;
+    }
+
+    @Test
+    void capturedPaymentIsRecordedAsPaid() throws Exception {
+        long orderId = order(newUser(), vendor(), "PENDING", "CREATED");
+        long paymentId = payment(orderId, "CREATED", null);
+        gatewaySays("pay_" + orderId, "captured");
+
+        paymentService.verifyPayment(request(orderId, paymentId));
+
+        assertThat(paymentStatus(paymentId)).isEqualTo("SUCCESS");
+        assertThat(orderPaymentStatus(orderId)).isEqualTo("SUCCESS");
+    }
+
+    @Test
+    void paymentNotCompleteAtTheGatewayIsNotRecordedAsPaid() throws Exception {
+        long orderId = order(newUser(), vendor(), "PENDING", "CREATED");
+        long paymentId = payment(orderId, "CREATED", null);
+        gatewaySays("pay_" + orderId, "created");
+
+        assertThatThrownBy(() -> paymentService.verifyPayment(request(orderId, paymentId)))
+                .isInstanceOf(PaymentException.class);
+        assertThat(paymentStatus(paymentId)).isEqualTo("CREATED");
+
+        gatewaySays("pay_" + orderId, "failed");
+        assertThatThrownBy(() -> paymentService.verifyPayment(request(orderId, paymentId)))
+                .isInstanceOf(PaymentException.class);
+        assertThat(paymentStatus(paymentId)).isEqualTo("FAILED");
+        assertThat(orderPaymentStatus(orderId)).isEqualTo("CREATED");
+    }
+
+    @Test
+    void replayedVerifyLeavesARefundAlone() throws Exception {
+        long orderId = order(newUser(), vendor(), "CANCELLED", "REFUNDED");
+        long paymentId = payment(orderId, "REFUNDED", "pay_" + orderId);
+        gatewaySays("pay_" + orderId, "captured");
+
+        paymentService.verifyPayment(request(orderId, paymentId));
+
+        assertThat(paymentStatus(paymentId)).isEqualTo("REFUNDED");
+        assertThat(orderPaymentStatus(orderId)).isEqualTo("REFUNDED");
+    }
+
+    private long payment(long orderId, String status, String razorpayPaymentId) {
+        return jdbcTemplate.queryForObject("INSERT INTO payments (order_id, razorpay_order_id, razorpay_payment_id, " +
+                        "status, amount, currency, webhook_verified, created_at) " +
+                        "VALUES (?, 'order_' || ?, ?, ?, 120, 'INR', false, now()) RETURNING id",
+                Long.class, orderId, orderId, razorpayPaymentId, status);
+    }
+
+    private void gatewaySays(String razorpayPaymentId, String status) throws Exception {
+        when(payments.fetch(razorpayPaymentId)).thenReturn(new Payment(new JSONObject()
+                .put("id", razorpayPaymentId).put("status", status).put("method", "upi")));
+    }
+
+    private static VerifyPaymentRequest request(long orderId, long paymentId) {
+        String razorpayPaymentId = "pay_" + orderId;
+        return new VerifyPaymentRequest(paymentId, razorpayPaymentId,
+                sign("order_" + orderId + "|" + razorpayPaymentId));
+    }
+
+    private static String sign(String message) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(KEY_SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal(message.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String paymentStatus(long paymentId) {
+        return jdbcTemplate.queryForObject("SELECT status FROM payments WHERE id = ?", String.class, paymentId);
+    }
+
+    private String orderPaymentStatus(long orderId) {
+        return jdbcTemplate.queryForObject("SELECT payment_status FROM orders WHERE id = ?", String.class, orderId);
+    }
+}
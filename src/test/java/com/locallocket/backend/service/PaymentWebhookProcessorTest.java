@@ -0,0 +1,175 @@
+package com.locallocket.backend.service;
+
+import com.locallocket.backend.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Webhook intake and the background drainer against a real PostgreSQL. Deliveries are signed with
+ * the test webhook secret; the drain runs on its own thread, so results are waited for.
+ */
+class PaymentWebhookProcessorTest extends IntegrationTest {
+
+    private static final String WEBHOOK_SECRET = "webhook";
+
+    @Autowired
+    private PaymentWebhookProcessor processor;
+
+    @Test
+    void deliveryWithABadSignatureIsRejectedAndNotStored() {
+        long orderId = order(newUser(), vendor(), "PENDING", "CREATED");
+        String razorpayOrderId = razorpayOrderId(paymentFor(orderId));
+        String payload = paymentEvent("payment.captured", razorpayOrderId, "pay_" + orderId);
+
+        assertThat(processor.receive(payload, sign(payload, "not the secret"), "evt_bad_" + razorpayOrderId)).isFalse();
+        assertThat(processor.receive(payload, "zz", "evt_bad_" + razorpayOrderId)).isFalse();
+
+        assertThat(storedEvents(razorpayOrderId)).isZero();
+    }
+
+    @Test
+    void repeatedDeliveryIsAckedWithoutASecondRow() {
+        long orderId = order(newUser(), vendor(), "PENDING", "CREATED");
+        String razorpayOrderId = razorpayOrderId(paymentFor(orderId));
+        String payload = paymentEvent("payment.captured", razorpayOrderId, "pay_" + orderId);
+        String eventId = "evt_dup_" + razorpayOrderId;
+
+        assertThat(processor.receive(payload, sign(payload, WEBHOOK_SECRET), eventId)).isTrue();
+        assertThat(processor.receive(payload, sign(payload, WEBHOOK_SECRET), eventId)).isTrue();
+
+        assertThat(storedEvents(razorpayOrderId)).isEqualTo(1);
+        await(() -> "SUCCESS".equals(paymentStatus(orderId)));
+    }
+
+    @Test
+    void eventsOfOneOrderAreAppliedInArrivalOrder() {
+        long orderId = order(newUser(), vendor(), "PENDING", "CREATED");
+        String razorpayOrderId = razorpayOrderId(paymentFor(orderId));
+
+        // Applied the other way round, the authorization would overwrite the failure
+        store("evt_auth_" + razorpayOrderId, "payment.authorized", razorpayOrderId, "pay_" + orderId);
+        store("evt_fail_" + razorpayOrderId, "payment.failed", razorpayOrderId, "pay_" + orderId);
+        processor.poll();
+
+        await(() -> processed(razorpayOrderId) == 2);
+        assertThat(paymentStatus(orderId)).isEqualTo("FAILED");
+    }
+
+    @Test
+    void eventThatKeepsFailingIsSetAsideAfterMaxAttempts() {
+        long orderId = order(newUser(), vendor(), "PENDING", "CREATED");
+        String razorpayOrderId = razorpayOrderId(paymentFor(orderId));
+
+        // A captured payment without an id cannot be applied
+        String poison = "{\"event\":\"payment.captured\",\"payload\":{\"payment\":{\"entity\":" +
+                "{\"order_id\":\"" + razorpayOrderId + "\"}}}}";
+        processor.receive(poison, sign(poison, WEBHOOK_SECRET), "evt_poison_" + razorpayOrderId);
+        store("evt_auth_" + razorpayOrderId, "payment.authorized", razorpayOrderId, "pay_" + orderId);
+
+        for (int attempt = 1; attempt <= 3; attempt++) {
+            int attempts = attempt;
+            processor.poll();
+            await(() -> attempts(razorpayOrderId, "evt_poison_") >= attempts);
+        }
+
+        await(() -> "PENDING".equals(paymentStatus(orderId)));
+        assertThat(jdbcTemplate.queryForObject("SELECT status FROM webhook_events WHERE event_id = ?",
+                String.class, "evt_poison_" + razorpayOrderId)).isEqualTo("FAILED");
+        assertThat(attempts(razorpayOrderId, "evt_poison_")).isEqualTo(3);
+    }
+
+    @Test
+    void failedWriteIsChargedToTheEventThatMadeIt() {
+        long orderId = order(newUser(), vendor(), "PENDING", "CREATED");
+        String razorpayOrderId = razorpayOrderId(paymentFor(orderId));
+        long otherOrderId = order(newUser(), vendor(), "PENDING", "CREATED");
+        paymentFor(otherOrderId);
+        jdbcTemplate.update("UPDATE payments SET razorpay_payment_id = ? WHERE order_id = ?", "pay_" + otherOrderId, otherOrderId);
+
+        // The payment id belongs to another payment, which only the database notices
+        store("evt_clash_" + razorpayOrderId, "payment.authorized", razorpayOrderId, "pay_" + otherOrderId);
+        store("evt_next_" + razorpayOrderId, "payment.dispute.created", razorpayOrderId, "pay_" + orderId);
+
+        for (int attempt = 1; attempt <= 3; attempt++) {
+            int attempts = attempt;
+            processor.poll();
+            await(() -> attempts(razorpayOrderId, "evt_clash_") >= attempts);
+        }
+
+        await(() -> processed(razorpayOrderId) == 1);
+        assertThat(attempts(razorpayOrderId, "evt_next_")).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT status FROM webhook_events WHERE event_id = ?",
+                String.class, "evt_clash_" + razorpayOrderId)).isEqualTo("FAILED");
+    }
+
+    private long paymentFor(long orderId) {
+        jdbcTemplate.update("INSERT INTO payments (order_id, razorpay_order_id, status, amount, currency, " +
+                "webhook_verified, created_at) VALUES (?, 'order_' || ?, 'CREATED', 120, 'INR', false, now())",
+                orderId, orderId);
+        return orderId;
+    }
+
+    private static String razorpayOrderId(long orderId) {
+        return "order_" + orderId;
+    }
+
+    private void store(String eventId, String eventType, String razorpayOrderId, String razorpayPaymentId) {
+        String payload = paymentEvent(eventType, razorpayOrderId, razorpayPaymentId);
+        assertThat(processor.receive(payload, sign(payload, WEBHOOK_SECRET), eventId)).isTrue();
+    }
+
+    private static String paymentEvent(String eventType, String razorpayOrderId, String razorpayPaymentId) {
+        return "{\"event\":\"" + eventType + "\",\"payload\":{\"payment\":{\"entity\":" +
+                "{\"id\":\"" + razorpayPaymentId + "\",\"order_id\":\"" + razorpayOrderId + "\"}}}}";
+    }
+
+    private static String sign(String payload, String secret) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal(payload.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int storedEvents(String razorpayOrderId) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM webhook_events WHERE razorpay_order_id = ?",
+                Integer.class, razorpayOrderId);
+    }
+
+    private int processed(String razorpayOrderId) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM webhook_events " +
+                "WHERE razorpay_order_id = ? AND status = 'PROCESSED'", Integer.class, razorpayOrderId);
+    }
+
+    private int attempts(String razorpayOrderId, String eventIdPrefix) {
+        return jdbcTemplate.queryForObject("SELECT attempts FROM webhook_events WHERE event_id = ?",
+                Integer.class, eventIdPrefix + razorpayOrderId);
+    }
+
+    private String paymentStatus(long orderId) {
+        return jdbcTemplate.queryForObject("SELECT status FROM payments WHERE order_id = ?", String.class, orderId);
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("timed out waiting for the drainer").isLessThan(deadline);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.locallocket.backend.service;
+
+import com.locallocket.backend.entity.Product;
+import com.locallocket.backend.entity.Vendor;
+import com.locallocket.backend.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Ranking, matching and paging of the trigram index, and rebuilds racing product writes.
+ */
+class ProductSearchIndexTest {
+
+    private final ProductRepository productRepository = mock(ProductRepository.class);
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ProductSearchIndex();
+        ReflectionTestUtils.setField(index, "productRepository", productRepository);
+        ReflectionTestUtils.setField(index, "maxCandidates", 5000);
+    }
+
+    @Test
+    void nameMatchesOutrankDescriptionMatches() {
+        index.upsert(product(1, "Organic milk chocolate", null));
+        index.upsert(product(2, "Milk", null));
+        index.upsert(product(3, "Buttermilk", null));
+        index.upsert(product(4, "Paneer", "Made from fresh milk"));
+        index.upsert(product(5, "Bread", null));
+
+        assertThat(index.search("milk", null, true, 10)).containsExactly(2L, 1L, 3L, 4L);
+    }
+
+    @Test
+    void everyWordHasToMatch() {
+        index.upsert(product(1, "Toned milk", "Half litre pouch"));
+        index.upsert(product(2, "Toned milk", "Two litre pouch"));
+        index.upsert(product(3, "Almond milk", "Two litre carton"));
+
+        assertThat(index.search("milk two", null, true, 10)).containsExactly(2L, 3L);
+        assertThat(index.search("milk pouch two", null, true, 10)).containsExactly(2L);
+        assertThat(index.search("milk cheese", null, true, 10)).isEmpty();
+    }
+
+    @Test
+    void shortWordsFallBackToTheDatabaseButStillFilter() {
+        index.upsert(product(1, "A2 milk", null));
+        index.upsert(product(2, "Cow milk", null));
+
+        assertThat(index.supports("a2")).isFalse();
+        assertThat(index.supports("  ")).isFalse();
+        assertThat(index.supports("a2 milk")).isTrue();
+        assertThat(index.search("a2 milk", null, true, 10)).containsExactly(1L);
+    }
+
+    @Test
+    void inactiveAndOtherVendorsProductsAreFilteredOut() {
+        index.upsert(product(1, "Milk", null));
+        Product inactive = product(2, "Milk", null);
+        inactive.setIsActive(false);
+        index.upsert(inactive);
+        Product elsewhere = product(3, "Milk", null);
+        elsewhere.getVendor().setId(99L);
+        index.upsert(elsewhere);
+
+        assertThat(index.search("milk", Set.of(1L), true, 10)).containsExactly(1L);
+        assertThat(index.search("milk", Set.of(1L), false, 10)).containsExactly(1L, 2L);
+        assertThat(index.search("milk", null, false, 10)).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void pagesKeepOnlyTheBestHitsAndCountTheRest() {
+        for (long id = 1; id <= 50; id++) {
+            // Every fifth product has the word at the start of its name
+            index.upsert(product(id, id % 5 == 0 ? "Milk " + id : "Fresh milk " + id, null));
+        }
+        when(productRepository.findAllWithVendorByIdIn(any())).thenAnswer(invocation -> {
+            List<Product> found = new ArrayList<>();
+            for (Long id : invocation.<Collection<Long>>getArgument(0)) {
+                found.add(product(id, "Milk", null));
+            }
+            return found;
+        });
+
+        assertThat(index.search("milk", null, true, 3)).containsExactly(5L, 10L, 15L);
+
+        Page<Product> second = index.searchPage("milk", null, true, PageRequest.of(1, 8));
+        assertThat(second.getContent()).extracting(Product::getId)
+                .containsExactly(45L, 50L, 1L, 2L, 3L, 4L, 6L, 7L);
+        assertThat(second.getTotalElements()).isEqualTo(50);
+    }
+
+    @Test
+    void commonWordsStopAfterMaxCandidates() {
+        ReflectionTestUtils.setField(index, "maxCandidates", 20);
+        for (long id = 1; id <= 100; id++) {
+            index.upsert(product(id, "Milk " + id, null));
+        }
+        when(productRepository.findAllWithVendorByIdIn(any())).thenReturn(List.of());
+
+        assertThat(index.search("milk", null, true, 100)).hasSize(20);
+        assertThat(index.searchPage("milk", null, true, PageRequest.of(0, 10)).getTotalElements()).isEqualTo(20);
+    }
+
+    @Test
+    void rebuildLeavesProductsWrittenMeanwhileAlone() {
+        index.upsert(product(1, "Milk", null));
+        index.upsert(product(2, "Bread", null));
+
+        when(productRepository.findBatchAfterId(eq(0L), any())).thenAnswer(invocation -> {
+            // The batch is read before these writes commit
+            List<Product> batch = List.of(product(1, "Milk", null), product(2, "Bread", null));
+            index.upsert(product(1, "Curd", null));
+            index.remove(2L);
+            index.upsert(product(3, "Butter", null));
+            return batch;
+        });
+        when(productRepository.findBatchAfterId(eq(2L), any())).thenReturn(List.of());
+
+        index.rebuild();
+
+        assertThat(index.search("milk", null, true, 10)).isEmpty();
+        assertThat(index.search("curd", null, true, 10)).containsExactly(1L);
+        assertThat(index.search("bread", null, true, 10)).isEmpty();
+        assertThat(index.search("butter", null, true, 10)).containsExactly(3L);
+    }
+
+    @Test
+    void rebuildDropsProductsThatAreGone() {
+        index.upsert(product(1, "Milk", null));
+        index.upsert(product(2, "Bread", null));
+        when(productRepository.findBatchAfterId(anyLong(), any())).thenReturn(List.of());
+        when(productRepository.findBatchAfterId(eq(0L), any())).thenReturn(List.of(product(2, "Bread", null)));
+
+        index.rebuild();
+
+        assertThat(index.search("milk", null, true, 10)).isEmpty();
+        assertThat(index.search("bread", null, true, 10)).containsExactly(2L);
+    }
+
+    private static Product product(long id, String name, String description) {
+        Vendor vendor = new Vendor();
+        vendor.setId(1L);
+        Product product = new Product();
+        product.setId(id);
+        product.setVendor(vendor);
+        product.setName(name);
+        product.setDescription(description);
+        product.setIsActive(true);
+        return product;
+    }
+}
@@ -0,0 +1,206 @@
+package com.locallocket.backend.service;
+
+import com.locallocket.backend.IntegrationTest;
+import com.locallocket.backend.repository.OrderRepository;
+import com.razorpay.PaymentClient;
+import com.razorpay.RazorpayException;
+import com.razorpay.Refund;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Drives the refund queue against a real PostgreSQL with the Razorpay client stubbed out.
+ * The worker is polled by hand; its schedule is pushed out of the way.
+ */
+class RefundWorkerTest extends IntegrationTest {
+
+    @Autowired
+    private RefundWorker refundWorker;
+
+    @Autowired
+    private RefundService refundService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private PaymentClient payments;
+
+    @BeforeEach
+    void stubGateway() {
+        payments = mock(PaymentClient.class);
+        razorpayClient.payments = payments;
+        // Jobs of earlier tests are settled one way or another; keep them out of this one's polls
+        jdbcTemplate.update("UPDATE refund_jobs SET status = 'FAILED' WHERE status IN ('PENDING', 'SUBMITTED')");
+    }
+
+    @Test
+    void processedRefundMarksPaymentRefunded() throws Exception {
+        long orderId = paidOrder();
+        when(payments.refund(eq("pay_" + orderId), any(JSONObject.class))).thenReturn(refund("rfnd_1", "processed", null));
+
+        enqueue(orderId);
+        assertThat(paymentStatus(orderId)).isEqualTo("REFUND_PENDING");
+        assertThat(orderPaymentStatus(orderId)).isEqualTo("REFUND_PENDING");
+
+        refundWorker.poll();
+
+        ArgumentCaptor<JSONObject> request = ArgumentCaptor.forClass(JSONObject.class);
+        verify(payments).refund(eq("pay_" + orderId), request.capture());
+        assertThat(request.getValue().getInt("amount")).isEqualTo(12000);
+        assertThat(request.getValue().getString("receipt")).startsWith("refund_");
+
+        assertThat(jobStatus(orderId)).isEqualTo("SUCCEEDED");
+        assertThat(paymentStatus(orderId)).isEqualTo("REFUNDED");
+        assertThat(orderPaymentStatus(orderId)).isEqualTo("REFUNDED");
+        assertThat(jdbcTemplate.queryForObject("SELECT refund_id FROM payments WHERE order_id = ?", String.class, orderId))
+                .isEqualTo("rfnd_1");
+    }
+
+    @Test
+    void enqueueTwiceQueuesOneJob() {
+        long orderId = paidOrder();
+
+        enqueue(orderId);
+        enqueue(orderId);
+
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM refund_jobs WHERE order_id = ?", Integer.class, orderId))
+                .isEqualTo(1);
+    }
+
+    @Test
+    void gatewayErrorIsRetriedWithoutRefundingTwice() throws Exception {
+        long orderId = paidOrder();
+        when(payments.refund(anyString(), any(JSONObject.class))).thenThrow(new RazorpayException("read timed out"));
+
+        enqueue(orderId);
+        refundWorker.poll();
+
+        Map<String, Object> job = job(orderId);
+        assertThat(job.get("status")).isEqualTo("PENDING");
+        assertThat(job.get("attempts")).isEqualTo(1);
+        assertThat(job.get("last_error")).isEqualTo("read timed out");
+        assertThat(jdbcTemplate.queryForObject("SELECT next_attempt_at > now() + INTERVAL '50 seconds' " +
+                "FROM refund_jobs WHERE order_id = ?", Boolean.class, orderId)).isTrue();
+        assertThat(paymentStatus(orderId)).isEqualTo("REFUND_PENDING");
+
+        // Not due yet
+        refundWorker.poll();
+        verify(payments, times(1)).refund(anyString(), any(JSONObject.class));
+
+        // The timed out call did reach the gateway; the retry finds that refund by its receipt
+        makeDue(orderId);
+        when(payments.fetchAllRefunds("pay_" + orderId)).thenReturn(List.of(
+                refund("rfnd_other", "processed", "someone_else"),
+                refund("rfnd_2", "processed", (String) job.get("idempotency_key"))));
+        refundWorker.poll();
+
+        verify(payments, times(1)).refund(anyString(), any(JSONObject.class));
+        assertThat(jobStatus(orderId)).isEqualTo("SUCCEEDED");
+        assertThat(paymentStatus(orderId)).isEqualTo("REFUNDED");
+        assertThat(jdbcTemplate.queryForObject("SELECT refund_id FROM payments WHERE order_id = ?", String.class, orderId))
+                .isEqualTo("rfnd_2");
+    }
+
+    @Test
+    void pendingRefundIsConfirmedOnALaterPoll() throws Exception {
+        long orderId = paidOrder();
+        when(payments.refund(anyString(), any(JSONObject.class))).thenReturn(refund("rfnd_3", "pending", null));
+
+        enqueue(orderId);
+        refundWorker.poll();
+
+        assertThat(jobStatus(orderId)).isEqualTo("SUBMITTED");
+        assertThat(paymentStatus(orderId)).isEqualTo("REFUND_PENDING");
+
+        makeDue(orderId);
+        when(payments.fetchRefund("pay_" + orderId, "rfnd_3")).thenReturn(refund("rfnd_3", "processed", null));
+        refundWorker.poll();
+
+        verify(payments, times(1)).refund(anyString(), any(JSONObject.class));
+        assertThat(jobStatus(orderId)).isEqualTo("SUCCEEDED");
+        assertThat(paymentStatus(orderId)).isEqualTo("REFUNDED");
+        assertThat(orderPaymentStatus(orderId)).isEqualTo("REFUNDED");
+    }
+
+    @Test
+    void givingUpRestoresThePaymentStatus() throws Exception {
+        long orderId = paidOrder();
+        when(payments.refund(anyString(), any(JSONObject.class))).thenThrow(new RazorpayException("gateway down"));
+        when(payments.fetchAllRefunds(anyString())).thenThrow(new RazorpayException("gateway down"));
+
+        enqueue(orderId);
+        for (int i = 0; i < 3; i++) {
+            makeDue(orderId);
+            refundWorker.poll();
+        }
+
+        assertThat(jobStatus(orderId)).isEqualTo("FAILED");
+        assertThat(paymentStatus(orderId)).isEqualTo("SUCCESS");
+        assertThat(orderPaymentStatus(orderId)).isEqualTo("SUCCESS");
+        verify(payments, never()).fetchRefund(anyString(), anyString());
+    }
+
+    private long paidOrder() {
+        long orderId = order(newUser(), vendor(), "CANCELLED", "SUCCESS");
+        jdbcTemplate.update("INSERT INTO payments (order_id, razorpay_order_id, razorpay_payment_id, status, amount, " +
+                "currency, webhook_verified, created_at) VALUES (?, 'order_' || ?, 'pay_' || ?, 'SUCCESS', 120, 'INR', true, now())",
+                orderId, orderId, orderId);
+        return orderId;
+    }
+
+    private void enqueue(long orderId) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                refundService.enqueue(orderRepository.findById(orderId).orElseThrow(), "Order cancelled by customer"));
+    }
+
+    private void makeDue(long orderId) {
+        jdbcTemplate.update("UPDATE refund_jobs SET next_attempt_at = now() WHERE order_id = ?", orderId);
+    }
+
+    private Map<String, Object> job(long orderId) {
+        return jdbcTemplate.queryForMap("SELECT * FROM refund_jobs WHERE order_id = ?", orderId);
+    }
+
+    private String jobStatus(long orderId) {
+        return (String) job(orderId).get("status");
+    }
+
+    private String paymentStatus(long orderId) {
+        return jdbcTemplate.queryForObject("SELECT status FROM payments WHERE order_id = ?", String.class, orderId);
+    }
+
+    private String orderPaymentStatus(long orderId) {
+        return jdbcTemplate.queryForObject("SELECT payment_status FROM orders WHERE id = ?", String.class, orderId);
+    }
+
+    private static Refund refund(String id, String status, String receipt) {
+        JSONObject json = new JSONObject();
+        json.put("id", id);
+        json.put("entity", "refund");
+        json.put("status", status);
+        json.put("amount", 12000);
+        json.put("receipt", receipt != null ? receipt : JSONObject.NULL);
+        return new Refund(json);
+    }
+}
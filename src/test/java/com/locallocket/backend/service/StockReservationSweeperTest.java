@@ -0,0 +1,68 @@
+package com.locallocket.backend.service;
+
+import com.locallocket.backend.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Expiry of unpaid orders' stock holds against a real PostgreSQL. The sweep is run by hand.
+ */
+class StockReservationSweeperTest extends IntegrationTest {
+
+    @Autowired
+    private StockReservationSweeper sweeper;
+
+    @Test
+    void unpaidOrderIsCancelledAndItsStockReleased() {
+        long vendorId = vendor();
+        long productId = product(vendorId, 50, 8);
+        long orderId = orderWithExpiredHold(vendorId, productId, "CREATED");
+
+        sweeper.sweepExpired();
+
+        assertThat(orderStatus(orderId)).isEqualTo("CANCELLED");
+        assertThat(holdStatus(orderId)).isEqualTo("RELEASED");
+        assertThat(stock(productId)).isEqualTo(10);
+    }
+
+    @Test
+    void authorizedPaymentKeepsItsHoldUntilCapture() {
+        long vendorId = vendor();
+        long productId = product(vendorId, 50, 8);
+        // payment.authorized marks the payment PENDING; the order itself still says CREATED
+        long orderId = orderWithExpiredHold(vendorId, productId, "PENDING");
+
+        sweeper.sweepExpired();
+
+        assertThat(orderStatus(orderId)).isEqualTo("PENDING");
+        assertThat(holdStatus(orderId)).isEqualTo("HELD");
+        assertThat(jdbcTemplate.queryForObject("SELECT expires_at > now() FROM stock_reservations WHERE order_id = ?",
+                Boolean.class, orderId)).isTrue();
+        assertThat(stock(productId)).isEqualTo(8);
+    }
+
+    private long orderWithExpiredHold(long vendorId, long productId, String paymentStatus) {
+        long orderId = order(newUser(), vendorId, "PENDING", "CREATED");
+        jdbcTemplate.update("INSERT INTO payments (order_id, razorpay_order_id, status, amount, currency, " +
+                "webhook_verified, created_at) VALUES (?, 'order_' || ?, ?, 120, 'INR', false, now())",
+                orderId, orderId, paymentStatus);
+        jdbcTemplate.update("INSERT INTO stock_reservations (order_id, product_id, quantity, status, expires_at, " +
+                "created_at, updated_at) VALUES (?, ?, 2, 'HELD', now() - INTERVAL '1 minute', now(), now())",
+                orderId, productId);
+        return orderId;
+    }
+
+    private String orderStatus(long orderId) {
+        return jdbcTemplate.queryForObject("SELECT status FROM orders WHERE id = ?", String.class, orderId);
+    }
+
+    private String holdStatus(long orderId) {
+        return jdbcTemplate.queryForObject("SELECT status FROM stock_reservations WHERE order_id = ?", String.class, orderId);
+    }
+
+    private int stock(long productId) {
+        return jdbcTemplate.queryForObject("SELECT stock FROM products WHERE id = ?", Integer.class, productId);
+    }
+}
@@ -0,0 +1,140 @@
+package com.locallocket.backend.service;
+
+import com.locallocket.backend.entity.Vendor;
+import com.locallocket.backend.repository.VendorRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Radius and nearest lookups checked against a plain distance scan, and rebuilds racing vendor writes.
+ */
+class VendorSpatialIndexTest {
+
+    private static final double LAT = 12.97;
+    private static final double LON = 77.59;
+
+    private final VendorRepository vendorRepository = mock(VendorRepository.class);
+    private VendorSpatialIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new VendorSpatialIndex();
+        ReflectionTestUtils.setField(index, "vendorRepository", vendorRepository);
+        ReflectionTestUtils.setField(index, "cellSizeDegrees", 0.05);
+    }
+
+    @Test
+    void withinRadiusFindsExactlyTheVendorsInsideItNearestFirst() {
+        List<Vendor> vendors = scatter(500, 0.5);
+        vendors.forEach(index::upsert);
+
+        for (double radiusKm : new double[]{0.5, 3, 12, 40}) {
+            List<Long> expected = vendors.stream()
+                    .filter(vendor -> distanceKm(vendor) <= radiusKm)
+                    .sorted((a, b) -> Double.compare(distanceKm(a), distanceKm(b)))
+                    .map(Vendor::getId)
+                    .toList();
+
+            List<VendorSpatialIndex.VendorHit> hits = index.withinRadius(LAT, LON, radiusKm);
+
+            assertThat(hits).extracting(hit -> hit.vendor().id()).containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    void nearestStopsAtTheRightRingAndMatchesAFullScan() {
+        List<Vendor> vendors = scatter(2000, 0.3);
+        vendors.forEach(index::upsert);
+
+        for (int k : new int[]{1, 5, 25}) {
+            List<Double> expected = vendors.stream()
+                    .map(this::distanceKm)
+                    .filter(distance -> distance <= 10)
+                    .sorted()
+                    .limit(k)
+                    .toList();
+
+            assertThat(index.nearest(LAT, LON, k, 10)).extracting(VendorSpatialIndex.VendorHit::distanceKm)
+                    .containsExactlyElementsOf(expected);
+        }
+
+        // A vendor diagonally out in the corner of the first ring is farther than one two rings straight up
+        VendorSpatialIndex sparse = new VendorSpatialIndex();
+        ReflectionTestUtils.setField(sparse, "cellSizeDegrees", 0.05);
+        sparse.upsert(vendor(1, LAT + 0.049, LON + 0.049));
+        sparse.upsert(vendor(2, LAT + 0.06, LON));
+        assertThat(sparse.nearest(LAT, LON, 1, 50)).extracting(hit -> hit.vendor().id()).containsExactly(2L);
+    }
+
+    @Test
+    void hugeRadiusIsAnsweredWithoutWalkingTheGrid() {
+        List<Vendor> vendors = scatter(100, 0.5);
+        vendors.forEach(index::upsert);
+        index.upsert(vendor(10_000, -89.9, -179.9));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(2), () -> {
+            assertThat(index.withinRadius(LAT, LON, Integer.MAX_VALUE / 1000.0)).hasSize(101);
+            assertThat(index.withinRadius(LAT, LON, 20_000)).hasSize(101);
+            assertThat(index.nearest(LAT, LON, 3, Integer.MAX_VALUE / 1000.0)).hasSize(3);
+        });
+    }
+
+    @Test
+    void rebuildLeavesVendorsWrittenMeanwhileAlone() {
+        Vendor moved = vendor(1, LAT, LON);
+        Vendor closed = vendor(2, LAT, LON);
+        index.upsert(moved);
+        index.upsert(closed);
+
+        Vendor joined = vendor(3, LAT, LON);
+        when(vendorRepository.findByIsActiveTrue()).thenAnswer(invocation -> {
+            // The snapshot is taken before these writes commit
+            List<Vendor> snapshot = List.of(vendor(1, LAT, LON), vendor(2, LAT, LON));
+            index.upsert(joined);
+            index.upsert(vendor(1, LAT + 1, LON + 1));
+            index.remove(2L);
+            return snapshot;
+        });
+
+        index.rebuild();
+
+        assertThat(index.withinRadius(LAT, LON, 1)).extracting(hit -> hit.vendor().id()).containsExactly(3L);
+        assertThat(index.withinRadius(LAT + 1, LON + 1, 1)).extracting(hit -> hit.vendor().id()).containsExactly(1L);
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    private List<Vendor> scatter(int count, double spreadDegrees) {
+        Random random = new Random(42);
+        List<Vendor> vendors = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            vendors.add(vendor(i, LAT + (random.nextDouble() * 2 - 1) * spreadDegrees,
+                    LON + (random.nextDouble() * 2 - 1) * spreadDegrees));
+        }
+        return vendors;
+    }
+
+    private static Vendor vendor(long id, double lat, double lon) {
+        Vendor vendor = new Vendor();
+        vendor.setId(id);
+        vendor.setShopName("Shop " + id);
+        vendor.setLatitude(lat);
+        vendor.setLongitude(lon);
+        vendor.setIsActive(true);
+        return vendor;
+    }
+
+    private double distanceKm(Vendor vendor) {
+        return VendorSpatialIndex.distanceKm(LAT, LON, vendor.getLatitude(), vendor.getLongitude());
+    }
+}